@@ -0,0 +1,38 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common;
+
+import dev.waterdog.chunky.common.data.chunk.ChunkHolder;
+import dev.waterdog.chunky.common.network.ChunkStream;
+
+/**
+ * Receives chunks requested by {@link ChunkStream}. Methods are never called concurrently and never on network threads,
+ * so they may block, but chunk stays in flight until it is handled.
+ * No chunks are requested until sink signals demand using {@link ChunkStream#request(long)}.
+ */
+public interface ChunkSink {
+
+    default void onSubscribe(ChunkStream stream) {
+    }
+
+    void onChunk(ChunkHolder chunkHolder);
+
+    default void onError(int chunkX, int chunkZ, Throwable error) {
+    }
+
+    default void onComplete() {
+    }
+}
@@ -36,4 +36,11 @@ public interface ChunkyListener {
 
     default void onChunkRequestTimeout(ChunkRequest request, ChunkyPeer peer) {
     }
+
+    /**
+     * Called when chunk was received, but could not be requested fully or deserialized.
+     * Future of the request is completed exceptionally after this call.
+     */
+    default void onChunkRequestFailed(ChunkRequest request, ChunkyPeer peer, Throwable error) {
+    }
 }
@@ -96,6 +96,8 @@ public class SimpleChunkyTest {
     private static void shutdownHook(ChunkyClient chunky) {
         log.warn("Pending chunks: " + chunky.getPendingChunkRequests().size());
         log.warn("Received chunks: " + receivedCount.get());
+        log.warn("Position latency: " + chunky.getPositionLatency());
+        chunky.getPeers().forEach(peer -> log.warn("[{}] in-flight positions limit: {}", peer.getDisplayName(), peer.getConcurrencyLimit()));
         chunky.getPendingChunkRequests().values().forEach(request ->
                 log.info("pending chunk x={} z={}", request.getChunkX(), request.getChunkZ()));
         running = false;
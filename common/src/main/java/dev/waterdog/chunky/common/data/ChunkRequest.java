@@ -16,7 +16,12 @@
 package dev.waterdog.chunky.common.data;
 
 import dev.waterdog.chunky.common.data.chunk.ChunkHolder;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.util.concurrent.CompletableFuture;
 
@@ -25,4 +30,38 @@ public class ChunkRequest {
     private final int chunkX;
     private final int chunkZ;
     private final CompletableFuture<ChunkHolder> future = new CompletableFuture<>();
+    // Count of callers sharing the future, only single consumer may recycle received chunk
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private int consumers;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private boolean completed;
+
+    /**
+     * Registers new caller which will use the received chunk.
+     * @return false if request was already completed and can not be joined anymore
+     */
+    public synchronized boolean addConsumer() {
+        if (this.completed) {
+            return false;
+        }
+        this.consumers++;
+        return true;
+    }
+
+    /**
+     * Completes the request. Chunk is marked as exclusive if the request has single consumer.
+     */
+    public void complete(ChunkHolder chunkHolder) {
+        synchronized (this) {
+            this.completed = true;
+            chunkHolder.setExclusive(this.consumers == 1);
+        }
+        this.future.complete(chunkHolder);
+    }
 }
@@ -15,12 +15,24 @@
 
 package dev.waterdog.chunky.common.data.chunk;
 
+import com.nukkitx.nbt.NBTInputStream;
+import com.nukkitx.nbt.NbtMap;
+import com.nukkitx.nbt.NbtUtils;
 import dev.waterdog.chunky.common.palette.BlockPaletteLegacy;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import lombok.Data;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.List;
 
 @Data
 public class ChunkHolder {
+    private static final Logger log = LogManager.getLogger("Chunky");
+
     private final int chunkX;
     private final int chunkZ;
     private final int subChunksLength;
@@ -29,7 +41,13 @@ public class ChunkHolder {
     private SubChunkHolder[] subChunks;
     private byte[] biomeData;
     private PaletteHolder[] palettedBiomes;
-    private byte[] blockEntities;
+    private final List<NbtMap> blockEntities = new ObjectArrayList<>();
+    // Whether storages may keep slices of network buffer instead of copying data
+    private boolean zeroCopy;
+    // Whether sub chunks are deserialized only once their storages are accessed
+    private boolean lazy;
+    // Whether single consumer received this chunk, so it may recycle its sub chunks
+    private volatile boolean exclusive;
 
     public boolean hasAllSubChunks() {
         for (SubChunkHolder subChunk : this.subChunks) {
@@ -40,14 +58,19 @@ public class ChunkHolder {
         return true;
     }
 
+    /**
+     * Reads all remaining block entities from buffer.
+     */
     public void addBlockEntities(ByteBuf buffer) {
-        int size = this.blockEntities == null ? 0 : this.blockEntities.length;
-        byte[] blockEntities = new byte[size + buffer.readableBytes()];
-
-        if (size > 0) {
-            System.arraycopy(this.blockEntities, 0, blockEntities, 0, size);
+        try (NBTInputStream stream = NbtUtils.createNetworkReader(new ByteBufInputStream(buffer))) {
+            while (buffer.isReadable()) {
+                Object tag = stream.readTag();
+                if (tag instanceof NbtMap) {
+                    this.blockEntities.add((NbtMap) tag);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Exception was thrown while reading BlockEntity nbt x=" + this.chunkX + " z=" + this.chunkZ, e);
         }
-        buffer.readBytes(blockEntities, size, buffer.readableBytes());
-        this.blockEntities = blockEntities;
     }
 }
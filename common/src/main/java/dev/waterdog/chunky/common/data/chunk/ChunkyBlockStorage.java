@@ -15,23 +15,141 @@
 
 package dev.waterdog.chunky.common.data.chunk;
 
-import lombok.Data;
-import lombok.EqualsAndHashCode;
+import dev.waterdog.chunky.common.util.ByteArrayPool;
+import io.netty.buffer.ByteBuf;
+import lombok.*;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 @Data
 @EqualsAndHashCode(callSuper = true)
 public class ChunkyBlockStorage extends PaletteHolder {
     public static final ChunkyBlockStorage AIR_STORAGE;
     static {
-        ChunkyBlockStorage storage = new ChunkyBlockStorage();
+        ImmutableBlockStorage storage = new ImmutableBlockStorage();
         storage.setLegacy(false);
         storage.setEmpty(true);
-        AIR_STORAGE = storage;
+        AIR_STORAGE = storage.freeze();
     }
 
+    // Canonical storages filled with single block, indexed by runtime id. Bigger ids are not cached
+    private static final int UNIFORM_CACHE_SIZE = 1 << 14;
+    private static final AtomicReferenceArray<ChunkyBlockStorage> UNIFORM_STORAGES = new AtomicReferenceArray<>(UNIFORM_CACHE_SIZE);
+
     private boolean legacy;
     private boolean empty;
     // Legacy data
     private byte[] blockIds;
     private byte[] blockData;
+    // Retained slice of network buffer with block ids followed by block data
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private ByteBuf legacyBuffer;
+    // Legacy arrays were adopted by other storage and must not be recycled
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private boolean legacyDataAdopted;
+
+    /**
+     * @return immutable storage where every block has given runtime id
+     */
+    public static ChunkyBlockStorage uniform(int runtimeId) {
+        if (runtimeId < 0 || runtimeId >= UNIFORM_CACHE_SIZE) {
+            return createUniform(runtimeId);
+        }
+
+        ChunkyBlockStorage storage = UNIFORM_STORAGES.get(runtimeId);
+        if (storage == null) {
+            UNIFORM_STORAGES.compareAndSet(runtimeId, null, createUniform(runtimeId));
+            storage = UNIFORM_STORAGES.get(runtimeId);
+        }
+        return storage;
+    }
+
+    private static ChunkyBlockStorage createUniform(int runtimeId) {
+        ImmutableBlockStorage storage = new ImmutableBlockStorage();
+        storage.setLegacy(false);
+        storage.setPaletteHeader(1); // 0 bits per block, runtime
+        storage.setPalette(singletonPalette(runtimeId));
+        storage.share();
+        return storage.freeze();
+    }
+
+    public boolean isUniform() {
+        return !this.legacy && !this.empty && this.getBitsPerBlock() == 0 && this.getPaletteSize() == 1;
+    }
+
+    public byte[] getBlockIds() {
+        if (this.blockIds == null && this.legacyBuffer != null) {
+            this.materializeLegacy();
+        }
+        return this.blockIds;
+    }
+
+    public byte[] getBlockData() {
+        if (this.blockData == null && this.legacyBuffer != null) {
+            this.materializeLegacy();
+        }
+        return this.blockData;
+    }
+
+    /**
+     * Sets legacy block ids and data to be read from given buffer. Storage takes ownership of the buffer.
+     */
+    public void setLegacyBuffer(ByteBuf legacyBuffer) {
+        if (this.legacyBuffer != null) {
+            this.legacyBuffer.release();
+        }
+        this.blockIds = null;
+        this.blockData = null;
+        this.legacyBuffer = legacyBuffer;
+    }
+
+    public int getBlockId(int index) {
+        if (this.blockIds == null && this.legacyBuffer != null) {
+            return this.legacyBuffer.getUnsignedByte(index);
+        }
+        return this.blockIds[index] & 0xff;
+    }
+
+    /**
+     * Transfers ownership of legacy arrays to the caller, they will not be recycled by this storage anymore.
+     */
+    public void adoptLegacyData() {
+        this.legacyDataAdopted = true;
+    }
+
+    /**
+     * Releases retained network buffers and returns legacy arrays to the pool if this storage still owns them.
+     * Storage must not be used after.
+     */
+    public void recycle() {
+        this.releaseWordsBuffer();
+        if (this.legacyBuffer != null) {
+            this.legacyBuffer.release();
+            this.legacyBuffer = null;
+        }
+
+        if (this.legacy && !this.legacyDataAdopted) {
+            ByteArrayPool.BLOCK_IDS.release(this.blockIds);
+            ByteArrayPool.BLOCK_DATA.release(this.blockData);
+        }
+        this.blockIds = null;
+        this.blockData = null;
+    }
+
+    private void materializeLegacy() {
+        byte[] blockIds = ByteArrayPool.BLOCK_IDS.allocate();
+        this.legacyBuffer.getBytes(0, blockIds);
+        byte[] blockData = ByteArrayPool.BLOCK_DATA.allocate();
+        this.legacyBuffer.getBytes(blockIds.length, blockData);
+
+        this.legacyBuffer.release();
+        this.legacyBuffer = null;
+        this.blockIds = blockIds;
+        this.blockData = blockData;
+    }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.data.chunk;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Storage shared between many sub chunks. Once frozen, all modifications throw and recycling is ignored.
+ */
+class ImmutableBlockStorage extends ChunkyBlockStorage {
+    private boolean frozen;
+
+    ImmutableBlockStorage freeze() {
+        this.frozen = true;
+        return this;
+    }
+
+    private void checkMutable() {
+        if (this.frozen) {
+            throw new UnsupportedOperationException("Shared block storage can not be modified");
+        }
+    }
+
+    @Override
+    public void setLegacy(boolean legacy) {
+        this.checkMutable();
+        super.setLegacy(legacy);
+    }
+
+    @Override
+    public void setEmpty(boolean empty) {
+        this.checkMutable();
+        super.setEmpty(empty);
+    }
+
+    @Override
+    public void setBlockIds(byte[] blockIds) {
+        this.checkMutable();
+        super.setBlockIds(blockIds);
+    }
+
+    @Override
+    public void setBlockData(byte[] blockData) {
+        this.checkMutable();
+        super.setBlockData(blockData);
+    }
+
+    @Override
+    public void setLegacyBuffer(ByteBuf legacyBuffer) {
+        this.checkMutable();
+        super.setLegacyBuffer(legacyBuffer);
+    }
+
+    @Override
+    public void adoptLegacyData() {
+        // Shared storage has no legacy data to adopt
+    }
+
+    @Override
+    public void recycle() {
+        // Shared storage is never released
+    }
+
+    @Override
+    public void setPaletteHeader(int paletteHeader) {
+        this.checkMutable();
+        super.setPaletteHeader(paletteHeader);
+    }
+
+    @Override
+    public void setWords(int[] words) {
+        this.checkMutable();
+        super.setWords(words);
+    }
+
+    @Override
+    public void setWordsBuffer(ByteBuf wordsBuffer) {
+        this.checkMutable();
+        super.setWordsBuffer(wordsBuffer);
+    }
+
+    @Override
+    public void setPalette(int[] palette, int paletteSize) {
+        this.checkMutable();
+        super.setPalette(palette, paletteSize);
+    }
+
+    @Override
+    public void setPaletteSize(int paletteSize) {
+        this.checkMutable();
+        super.setPaletteSize(paletteSize);
+    }
+}
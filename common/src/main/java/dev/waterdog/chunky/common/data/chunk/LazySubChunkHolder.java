@@ -0,0 +1,103 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.data.chunk;
+
+import dev.waterdog.chunky.common.palette.BlockPalette;
+import dev.waterdog.chunky.common.serializer.Serializers;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Sub chunk which keeps its raw payload and deserializes block storages on first access.
+ */
+public class LazySubChunkHolder extends SubChunkHolder {
+    private final int version;
+    private final ChunkHolder chunkHolder;
+    private final BlockPalette blockPalette;
+
+    private ByteBuf payload;
+    private ChunkyBlockStorage[] storages;
+    // Payload is released after first decode attempt, so its error is thrown on every access
+    private RuntimeException failure;
+
+    public LazySubChunkHolder(int y, ByteBuf payload, int version, ChunkHolder chunkHolder, BlockPalette blockPalette) {
+        super(y, null);
+        this.payload = payload;
+        this.version = version;
+        this.chunkHolder = chunkHolder;
+        this.blockPalette = blockPalette;
+    }
+
+    @Override
+    public synchronized ChunkyBlockStorage[] getStorages() {
+        if (this.failure != null) {
+            throw this.failure;
+        }
+
+        if (this.storages == null) {
+            try {
+                this.storages = Serializers.deserializeSubChunk(this.payload.duplicate(), this.chunkHolder, this.blockPalette, this.version);
+            } catch (RuntimeException e) {
+                this.failure = e;
+                throw e;
+            } finally {
+                this.payload.release();
+                this.payload = null;
+            }
+        }
+        return this.storages;
+    }
+
+    @Override
+    public synchronized void recycle() {
+        if (this.payload != null) {
+            this.payload.release();
+            this.payload = null;
+        }
+
+        // Decoded storages may retain slices of the payload
+        if (this.storages != null) {
+            super.recycle();
+        }
+    }
+
+    public synchronized boolean isDecoded() {
+        return this.storages != null;
+    }
+
+    /**
+     * Lazy holders are equal only to themselves, comparing storages would force decoding.
+     */
+    @Override
+    public boolean equals(Object o) {
+        return this == o;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    @Override
+    protected boolean canEqual(Object other) {
+        // Keeps equals of eager holders from decoding this holder
+        return other instanceof LazySubChunkHolder;
+    }
+
+    @Override
+    public String toString() {
+        return "LazySubChunkHolder(y=" + this.getY() + ", version=" + this.version + ", decoded=" + this.isDecoded() + ")";
+    }
+}
@@ -15,20 +15,140 @@
 
 package dev.waterdog.chunky.common.data.chunk;
 
-import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.ints.IntList;
-import lombok.AccessLevel;
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import io.netty.buffer.ByteBuf;
+import lombok.*;
+
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
 public class PaletteHolder {
+    public static final int MAX_PALETTE_SIZE = 4096;
+    // Single entry palettes (air, biomes) are very common, so arrays for small ids are shared
+    private static final int SINGLETON_CACHE_SIZE = 1024;
+    private static final AtomicReferenceArray<int[]> SINGLETON_PALETTES = new AtomicReferenceArray<>(SINGLETON_CACHE_SIZE);
+
     private int paletteHeader;
     private int[] words;
-    private IntList palette;
+    // Retained slice of network buffer with little endian words, used until words array is needed
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private ByteBuf wordsBuffer;
+    // Palette arrays may be shared and must not be modified
+    private int[] palette;
+    private int paletteSize;
+    // Shared holders are referenced from multiple places and are read-only, use copy() to modify them
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private boolean shared;
+
+    public static int[] singletonPalette(int entry) {
+        if (entry < 0 || entry >= SINGLETON_CACHE_SIZE) {
+            return new int[]{entry};
+        }
+
+        int[] palette = SINGLETON_PALETTES.get(entry);
+        if (palette == null) {
+            SINGLETON_PALETTES.compareAndSet(entry, null, new int[]{entry});
+            palette = SINGLETON_PALETTES.get(entry);
+        }
+        return palette;
+    }
+
+    public void setPalette(int[] palette) {
+        this.setPalette(palette, palette == null ? 0 : palette.length);
+    }
+
+    public void setPalette(int[] palette, int paletteSize) {
+        this.checkNotShared();
+        this.palette = palette;
+        this.paletteSize = paletteSize;
+    }
+
+    public void setPaletteHeader(int paletteHeader) {
+        this.checkNotShared();
+        this.paletteHeader = paletteHeader;
+    }
+
+    public void setPaletteSize(int paletteSize) {
+        this.checkNotShared();
+        this.paletteSize = paletteSize;
+    }
+
+    private void checkNotShared() {
+        if (this.shared) {
+            throw new UnsupportedOperationException("Shared palette holder can not be modified, copy it first");
+        }
+    }
+
+    public int getPaletteEntry(int index) {
+        if (index >= this.paletteSize) {
+            throw new IndexOutOfBoundsException("Palette index " + index + " out of bounds for size " + this.paletteSize);
+        }
+        return this.palette[index];
+    }
+
+    public int[] getWords() {
+        if (this.words == null && this.wordsBuffer != null) {
+            this.materializeWords();
+        }
+        return this.words;
+    }
+
+    public void setWords(int[] words) {
+        this.checkNotShared();
+        this.releaseWordsBuffer();
+        this.words = words;
+    }
+
+    /**
+     * Sets words to be read from given buffer instead of array. Holder takes ownership of the buffer.
+     */
+    public void setWordsBuffer(ByteBuf wordsBuffer) {
+        this.checkNotShared();
+        this.releaseWordsBuffer();
+        this.words = null;
+        this.wordsBuffer = wordsBuffer;
+    }
+
+    /**
+     * Reads single word without copying all words to array.
+     */
+    public int getWord(int index) {
+        if (this.words == null && this.wordsBuffer != null) {
+            return this.wordsBuffer.getIntLE(index << 2);
+        }
+        return this.words[index];
+    }
+
+    public int getWordsCount() {
+        if (this.words == null && this.wordsBuffer != null) {
+            return this.wordsBuffer.readableBytes() >> 2;
+        }
+        return this.words == null ? 0 : this.words.length;
+    }
+
+    private void materializeWords() {
+        int[] words = new int[this.wordsBuffer.readableBytes() >> 2];
+        this.wordsBuffer.nioBuffer().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(words);
+        this.releaseWordsBuffer();
+        this.words = words;
+    }
+
+    /**
+     * Releases retained network buffer, words which were not materialized are lost.
+     */
+    protected void releaseWordsBuffer() {
+        if (this.wordsBuffer != null) {
+            this.wordsBuffer.release();
+            this.wordsBuffer = null;
+        }
+    }
 
     public int getBitsPerBlock() {
         return this.paletteHeader >> 1;
@@ -38,11 +158,22 @@ public class PaletteHolder {
         return (this.paletteHeader & 0x01) == 0;
     }
 
-    public PaletteHolder copy() {
-        int[] words = null;
-        if (this.words != null) {
-            words = new int[this.words.length];
+    /**
+     * Marks this holder as shared. Shared holders are read-only, setters throw and {@link #copy()}
+     * must be used to get a modifiable holder.
+     */
+    public PaletteHolder share() {
+        if (this.words == null && this.wordsBuffer != null) {
+            // Materializing later would modify holder which may be read concurrently
+            this.materializeWords();
         }
-        return new PaletteHolder(this.paletteHeader, words, new IntArrayList(this.palette));
+        this.shared = true;
+        return this;
+    }
+
+    public PaletteHolder copy() {
+        int[] words = this.getWords();
+        // Palette is immutable, so it can be shared
+        return new PaletteHolder(this.paletteHeader, words == null ? null : words.clone(), null, this.palette, this.paletteSize, false);
     }
 }
@@ -22,6 +22,18 @@ public class SubChunkHolder {
     private final int y;
     private final ChunkyBlockStorage[] storages;
 
+    /**
+     * Releases data of sub chunk which will not be used anymore.
+     * Must be called only by exclusive owner of the chunk, see {@link ChunkHolder#isExclusive()}.
+     */
+    public void recycle() {
+        for (ChunkyBlockStorage storage : this.getStorages()) {
+            if (storage != null) {
+                storage.recycle();
+            }
+        }
+    }
+
     public static SubChunkHolder emptyHolder(int y) {
         return new SubChunkHolder(y, new ChunkyBlockStorage[]{ChunkyBlockStorage.AIR_STORAGE, ChunkyBlockStorage.AIR_STORAGE});
     }
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.network;
+
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+import static dev.waterdog.chunky.common.util.ChunkUtils.*;
+
+/**
+ * FIFO queue of chunk indexes with constant time membership checks and removal.
+ * All methods are guarded by the queue monitor, so indexes may be added from any thread.
+ * Peer polls and removes indexes from its event loop. Callbacks are never called while monitor is held.
+ */
+public class ChunkRequestQueue {
+
+    private final LongLinkedOpenHashSet queue = new LongLinkedOpenHashSet();
+    private final ChunkyPeer peer;
+    private final PeerRegionIndex regionIndex;
+
+    public ChunkRequestQueue(ChunkyPeer peer, PeerRegionIndex regionIndex) {
+        this.peer = peer;
+        this.regionIndex = regionIndex;
+    }
+
+    synchronized boolean add(long index) {
+        if (this.queue.add(index)) {
+            this.regionIndex.onQueued(index, this.peer);
+            return true;
+        }
+        return false;
+    }
+
+    synchronized boolean remove(long index) {
+        if (this.queue.remove(index)) {
+            this.regionIndex.onDequeued(index, this.peer);
+            return true;
+        }
+        return false;
+    }
+
+    synchronized void removeAll(LongCollection indexes) {
+        LongIterator iterator = indexes.iterator();
+        while (iterator.hasNext()) {
+            this.remove(iterator.nextLong());
+        }
+    }
+
+    /**
+     * @return first index in queue without removing it. Caller must check if queue is not empty.
+     */
+    synchronized long peekFirst() {
+        return this.queue.firstLong();
+    }
+
+    /**
+     * Removes up to given count of indexes which are closest to given position.
+     * Removed indexes are returned, so caller can pass them to other queue without holding this monitor.
+     * @return removed indexes
+     */
+    synchronized long[] removeNearest(int chunkX, int chunkZ, int count) {
+        if (this.queue.isEmpty() || count <= 0) {
+            return LongArrays.EMPTY_ARRAY;
+        }
+
+        long[] indexes = this.queue.toLongArray();
+        if (indexes.length > count) {
+            LongArrays.quickSort(indexes, (index1, index2) -> Long.compare(
+                    distanceSquared(chunkX, chunkZ, index1),
+                    distanceSquared(chunkX, chunkZ, index2)));
+        }
+
+        long[] removed = Arrays.copyOf(indexes, Math.min(count, indexes.length));
+        for (long index : removed) {
+            this.remove(index);
+        }
+        return removed;
+    }
+
+    private static long distanceSquared(int chunkX, int chunkZ, long index) {
+        long x = chunkX(index) - chunkX;
+        long z = chunkZ(index) - chunkZ;
+        return x * x + z * z;
+    }
+
+    public synchronized boolean contains(long index) {
+        return this.queue.contains(index);
+    }
+
+    public synchronized int size() {
+        return this.queue.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return this.queue.isEmpty();
+    }
+
+    /**
+     * Tests snapshot of the queue, predicate is called without holding the monitor.
+     */
+    public boolean anyMatch(LongPredicate predicate) {
+        for (long index : this.toLongArray()) {
+            if (predicate.test(index)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Iterates snapshot of the queue, consumer is called without holding the monitor.
+     */
+    public void forEach(LongConsumer consumer) {
+        for (long index : this.toLongArray()) {
+            consumer.accept(index);
+        }
+    }
+
+    public synchronized long[] toLongArray() {
+        return this.queue.toLongArray();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.network;
+
+import dev.waterdog.chunky.common.ChunkSink;
+import dev.waterdog.chunky.common.data.ChunkRequest;
+import dev.waterdog.chunky.common.data.chunk.ChunkHolder;
+import dev.waterdog.chunky.common.util.SerialExecutor;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static dev.waterdog.chunky.common.util.ChunkUtils.*;
+
+/**
+ * Pulls chunk indexes from iterator only when sink has demand and peers have free capacity,
+ * so only requests which are in flight are kept in memory.
+ * Sink is called on serial executor, never on peer event loops or decoder threads, so slow sink
+ * does not stall network. Request stays in flight until sink handles it, so slow sink also slows requesting.
+ */
+public class ChunkStream {
+
+    private static final Logger log = LogManager.getLogger("Chunky");
+    private static final long RETRY_DELAY = 500;
+
+    private final ChunkyClient client;
+    private final LongIterator indexes;
+    private final ChunkSink sink;
+    private final Executor sinkExecutor;
+    private final int maxInFlight;
+
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile boolean retryScheduled;
+    private volatile boolean completed;
+
+    // Accessed only in drain loop
+    private boolean hasRetry;
+    private long retryIndex;
+
+    ChunkStream(ChunkyClient client, LongIterator indexes, ChunkSink sink, Executor sinkExecutor, int maxInFlight) {
+        this.client = client;
+        this.indexes = indexes;
+        this.sink = sink;
+        this.sinkExecutor = new SerialExecutor(sinkExecutor);
+        this.maxInFlight = maxInFlight;
+    }
+
+    void start() {
+        this.sinkExecutor.execute(() -> this.sink.onSubscribe(this));
+    }
+
+    /**
+     * Signals that sink is ready to receive more chunks.
+     */
+    public void request(long count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Requested count must be positive: " + count);
+        }
+
+        long current;
+        long next;
+        do {
+            current = this.demand.get();
+            next = current + count < 0 ? Long.MAX_VALUE : current + count;
+        } while (!this.demand.compareAndSet(current, next));
+        this.drain();
+    }
+
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    public boolean isCompleted() {
+        return this.completed;
+    }
+
+    private void drain() {
+        if (this.wip.getAndIncrement() != 0) {
+            return;
+        }
+
+        int missed = 1;
+        do {
+            this.drainInternal();
+            missed = this.wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void drainInternal() {
+        while (!this.cancelled && !this.retryScheduled && this.inFlight.get() < this.maxInFlight && this.demand.get() > 0) {
+            long index;
+            if (this.hasRetry) {
+                index = this.retryIndex;
+            } else if (this.indexes.hasNext()) {
+                index = this.indexes.nextLong();
+            } else {
+                break;
+            }
+
+            ChunkRequest request = this.client.createRequest(index);
+            if (request == null) {
+                // All peers are full, try again once some request is completed
+                this.hasRetry = true;
+                this.retryIndex = index;
+                if (this.inFlight.get() == 0) {
+                    this.retryScheduled = true;
+                    this.client.getEventLoopGroup().schedule(this::onRetry, RETRY_DELAY, TimeUnit.MILLISECONDS);
+                }
+                break;
+            }
+
+            this.hasRetry = false;
+            this.demand.decrementAndGet();
+            this.inFlight.incrementAndGet();
+            request.getFuture().whenComplete((chunkHolder, error) -> this.onRequestComplete(index, chunkHolder, error));
+        }
+
+        if (!this.completed && (this.cancelled || (!this.hasRetry && !this.indexes.hasNext())) && this.inFlight.get() == 0) {
+            this.completed = true;
+            this.sinkExecutor.execute(this.sink::onComplete);
+        }
+    }
+
+    private void onRetry() {
+        this.retryScheduled = false;
+        this.drain();
+    }
+
+    private void onRequestComplete(long index, ChunkHolder chunkHolder, Throwable error) {
+        this.sinkExecutor.execute(() -> {
+            try {
+                if (error != null) {
+                    this.sink.onError(chunkX(index), chunkZ(index), error);
+                } else {
+                    this.sink.onChunk(chunkHolder);
+                }
+            } catch (Exception e) {
+                log.error("Chunk sink failed to handle chunk x={} z={}", chunkX(index), chunkZ(index), e);
+            }
+            this.inFlight.decrementAndGet();
+            this.drain();
+        });
+    }
+}
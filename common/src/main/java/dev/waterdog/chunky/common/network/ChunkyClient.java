@@ -19,14 +19,16 @@ import com.google.common.base.Preconditions;
 import com.nukkitx.network.raknet.util.RoundRobinIterator;
 import com.nukkitx.network.util.EventLoops;
 import com.nukkitx.network.util.NetworkThreadFactory;
+import dev.waterdog.chunky.common.ChunkSink;
 import dev.waterdog.chunky.common.ChunkyListener;
 import dev.waterdog.chunky.common.data.ChunkRequest;
 import dev.waterdog.chunky.common.data.chunk.ChunkHolder;
 import dev.waterdog.chunky.common.palette.BlockPaletteFactory;
+import dev.waterdog.chunky.common.util.ConcurrentLong2ObjectMap;
+import dev.waterdog.chunky.common.util.LatencyHistogram;
+import dev.waterdog.chunky.common.util.TeleportPlanner;
 import io.netty.channel.EventLoopGroup;
-import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
-import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
 import it.unimi.dsi.fastutil.objects.ObjectArraySet;
 import it.unimi.dsi.fastutil.objects.ObjectSets;
 import lombok.Getter;
@@ -36,10 +38,20 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.net.InetSocketAddress;
-import java.util.Collection;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static dev.waterdog.chunky.common.util.ChunkUtils.*;
 
@@ -47,11 +59,28 @@ import static dev.waterdog.chunky.common.util.ChunkUtils.*;
 public class ChunkyClient {
 
     private static final Logger log = LogManager.getLogger("Chunky");
+    private static final int DEFAULT_STREAM_WINDOW = 64;
+    private static final int STEAL_BATCH_SIZE = 32;
+    // Queued decode tasks per decoder thread, once full tasks run on the peer event loop
+    private static final int DECODE_QUEUE_PER_THREAD = 256;
 
     private final int peerCount;
     private final MinecraftVersion minecraftVersion;
     private final InetSocketAddress targetAddress;
     private final int maxPendingRequests;
+    // Count of positions single peer may have requested at once
+    private final int pipelineWindow;
+    // Whether peers adjust in-flight positions between 1 and pipelineWindow by server latency
+    private final boolean adaptiveConcurrency;
+    // Whether block storages are backed by network buffers until their data is needed
+    private final boolean zeroCopyDecoding;
+    // Whether sub chunks are deserialized only once their storages are accessed
+    private final boolean lazyDecoding;
+    private final int decodeThreads;
+    // Executor used to deserialize chunks, if null chunks are deserialized on peer event loop
+    private volatile ExecutorService decodeExecutor;
+    // Default executor for stream sinks, each stream runs its sink serially on it
+    private final ExecutorService sinkExecutor;
 
     private final boolean autoReconnect;
     private final long reconnectInterval;
@@ -65,14 +94,19 @@ public class ChunkyClient {
     private final RoundRobinIterator<ChunkyPeer> peerIterator = new RoundRobinIterator<>(this.peers);
     private volatile boolean running = false;
 
-    private final Long2ObjectMap<ChunkRequest> pendingChunkRequests = Long2ObjectMaps.synchronize(new Long2ObjectOpenHashMap<>());
+    // Keeps requests in same area on same peer
+    private final PeerRegionIndex regionIndex = new PeerRegionIndex();
+    private final ConcurrentLong2ObjectMap<ChunkRequest> pendingChunkRequests = new ConcurrentLong2ObjectMap<>();
+    // Time from teleport until all chunks of the position were received
+    private final LatencyHistogram positionLatency = new LatencyHistogram();
 
     public static Builder builder() {
         return new Builder();
     }
 
     public ChunkyClient(int peerCount, MinecraftVersion minecraftVersion, InetSocketAddress targetAddress, int maxPendingRequests, boolean autoReconnect,
-                        long reconnectInterval, BlockPaletteFactory paletteFactory, ChunkyListener chunkListener) {
+                        long reconnectInterval, BlockPaletteFactory paletteFactory, ChunkyListener chunkListener, int pipelineWindow,
+                        boolean adaptiveConcurrency, boolean zeroCopyDecoding, boolean lazyDecoding, int decodeThreads) {
         this.peerCount = peerCount;
         this.minecraftVersion = minecraftVersion;
         this.targetAddress = targetAddress;
@@ -81,18 +115,41 @@ public class ChunkyClient {
         this.reconnectInterval = reconnectInterval;
         this.paletteFactory = paletteFactory;
         this.listener = chunkListener;
+        this.pipelineWindow = Math.max(1, pipelineWindow);
+        this.adaptiveConcurrency = adaptiveConcurrency;
+        this.zeroCopyDecoding = zeroCopyDecoding;
+        this.lazyDecoding = lazyDecoding;
 
         NetworkThreadFactory factory = NetworkThreadFactory.builder()
                 .format("Chunky Listener - #%d")
                 .daemon(true)
                 .build();
         this.eventLoopGroup = EventLoops.getChannelType().newEventLoopGroup(peerCount, factory);
+        this.decodeThreads = decodeThreads;
+
+        NetworkThreadFactory sinkFactory = NetworkThreadFactory.builder()
+                .format("Chunky Sink - #%d")
+                .daemon(true)
+                .build();
+        // Idle threads expire, so the pool does not need to be shut down
+        this.sinkExecutor = Executors.newCachedThreadPool(sinkFactory);
     }
 
     public CompletableFuture<Void> connect() {
         Preconditions.checkArgument(!this.running, "ChunkyClient is already running");
         this.running = true;
 
+        if (this.decodeThreads > 0) {
+            NetworkThreadFactory decodeFactory = NetworkThreadFactory.builder()
+                    .format("Chunky Decoder - #%d")
+                    .daemon(true)
+                    .build();
+            // Bounded queue pushes back on peers instead of buffering chunks without limit
+            this.decodeExecutor = new ThreadPoolExecutor(this.decodeThreads, this.decodeThreads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(this.decodeThreads * DECODE_QUEUE_PER_THREAD), decodeFactory,
+                    new DecodeRejectionHandler());
+        }
+
         CompletableFuture<Void>[] futures = new CompletableFuture[this.peerCount];
         for (int i = 0; i < this.peerCount; i++) {
             ChunkyPeer peer = new ChunkyPeer(this, this.minecraftVersion, this.targetAddress, this.eventLoopGroup.next());
@@ -108,10 +165,24 @@ public class ChunkyClient {
         }
         this.running = false;
 
+        IllegalStateException error = new IllegalStateException("ChunkyClient was disconnected");
         for (ChunkyPeer peer : this.peers) {
             peer.close("Disconnected");
+            peer.failDecodeTasks(error);
         }
         this.peers.clear();
+
+        if (this.decodeExecutor != null) {
+            this.decodeExecutor.shutdown();
+            this.decodeExecutor = null;
+        }
+
+        // Peers will not receive nor time out these anymore, so nobody waits for them forever
+        for (ChunkRequest request : this.pendingChunkRequests.values()) {
+            if (this.pendingChunkRequests.remove(chunkIndex(request.getChunkX(), request.getChunkZ()), request)) {
+                request.getFuture().completeExceptionally(error);
+            }
+        }
     }
 
     public CompletableFuture<ChunkHolder> requestChunk(long index) {
@@ -119,22 +190,128 @@ public class ChunkyClient {
     }
 
     public CompletableFuture<ChunkHolder> requestChunk(int chunkX, int chunkZ) {
-        long index = chunkIndex(chunkX, chunkZ);
-        ChunkRequest request = this.pendingChunkRequests.get(index);
-        if (request != null) {
-            return request.getFuture();
-        }
-
-        ChunkyPeer peer = this.assignRequest(index, request = new ChunkRequest(chunkX, chunkZ));
-        if (peer == null) {
+        ChunkRequest request = this.createRequest(chunkIndex(chunkX, chunkZ));
+        if (request == null) {
             CompletableFuture<ChunkHolder> future = new CompletableFuture<>();
             future.completeExceptionally(new IllegalStateException("Can not request chunk x=" + chunkX + " z=" + chunkZ));
             return future;
         }
-        this.pendingChunkRequests.put(index, request);
         return request.getFuture();
     }
 
+    /**
+     * Requests chunks from iterator as sink signals demand. Indexes are pulled lazily, so iterator may be
+     * of any size without allocating requests for all chunks at once.
+     * @param maxInFlight max count of requests started by this stream and not completed yet
+     * @param sinkExecutor executor on which sink is called, calls are serialized by the stream
+     */
+    public ChunkStream requestChunks(LongIterator indexes, ChunkSink sink, int maxInFlight, Executor sinkExecutor) {
+        ChunkStream stream = new ChunkStream(this, indexes, sink, sinkExecutor, Math.max(1, maxInFlight));
+        stream.start();
+        return stream;
+    }
+
+    public ChunkStream requestChunks(LongIterator indexes, ChunkSink sink, int maxInFlight) {
+        return this.requestChunks(indexes, sink, maxInFlight, this.sinkExecutor);
+    }
+
+    public ChunkStream requestChunks(LongIterator indexes, ChunkSink sink) {
+        int perPeer = this.maxPendingRequests == 0 ? DEFAULT_STREAM_WINDOW : this.maxPendingRequests;
+        return this.requestChunks(indexes, sink, this.peerCount * perPeer);
+    }
+
+    /**
+     * @return pending request for chunk or null if no peer was able to accept new request
+     */
+    ChunkRequest createRequest(long index) {
+        ChunkRequest newRequest;
+        while (true) {
+            ChunkRequest request = this.pendingChunkRequests.get(index);
+            if (request == null) {
+                // Register request before it is assigned so only one request per chunk can exist
+                newRequest = new ChunkRequest(chunkX(index), chunkZ(index));
+                newRequest.addConsumer();
+                if ((request = this.pendingChunkRequests.putIfAbsent(index, newRequest)) == null) {
+                    break;
+                }
+            }
+
+            if (request.addConsumer()) {
+                return request;
+            }
+            // Request was completed meanwhile, create new one
+        }
+
+        if (this.assignRequest(index, newRequest) == null) {
+            this.pendingChunkRequests.remove(index, newRequest);
+            newRequest.getFuture().completeExceptionally(new IllegalStateException("Can not request chunk x=" + chunkX(index) + " z=" + chunkZ(index)));
+            return null;
+        }
+        return newRequest;
+    }
+
+    /**
+     * Requests all chunks in given area. Area is split to tiles which are received with single teleport,
+     * and tiles are requested in order along space-filling curve. Chunks are requested lazily through {@link ChunkStream},
+     * so peer queue limits apply and only bounded count of requests is in flight.
+     * @param consumer called for every received chunk
+     * @return future which is completed once all chunks were handled, exceptionally if some chunk could not be received
+     */
+    public CompletableFuture<Void> requestRegion(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ, Consumer<ChunkHolder> consumer) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        int peerCount = 0;
+        int radius = Integer.MAX_VALUE;
+        synchronized (this.peers) {
+            for (ChunkyPeer peer : this.peers) {
+                // Chunk radius is final once peer has spawned
+                if (peer.canRequestChunks()) {
+                    peerCount++;
+                    radius = Math.min(radius, Math.max(1, peer.getChunkRadius() - 1));
+                }
+            }
+        }
+
+        if (peerCount == 0) {
+            future.completeExceptionally(new IllegalStateException("Can not request region, no peers are spawned"));
+            return future;
+        }
+
+        List<TeleportPlanner.Tile> tiles = TeleportPlanner.plan(minChunkX, minChunkZ, maxChunkX, maxChunkZ, radius);
+        log.info("Requesting region of {} tiles using {} peers", tiles.size(), peerCount);
+
+        int perPeer = this.maxPendingRequests == 0 ? DEFAULT_STREAM_WINDOW : this.maxPendingRequests;
+        this.requestChunks(TeleportPlanner.chunkIterator(tiles), new ChunkSink() {
+            private Throwable error;
+
+            @Override
+            public void onSubscribe(ChunkStream stream) {
+                stream.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onChunk(ChunkHolder chunkHolder) {
+                consumer.accept(chunkHolder);
+            }
+
+            @Override
+            public void onError(int chunkX, int chunkZ, Throwable error) {
+                if (this.error == null) {
+                    this.error = error;
+                }
+            }
+
+            @Override
+            public void onComplete() {
+                if (this.error == null) {
+                    future.complete(null);
+                } else {
+                    future.completeExceptionally(this.error);
+                }
+            }
+        }, peerCount * perPeer);
+        return future;
+    }
+
     protected void onPeerDisconnected(ChunkyPeer peer) {
         if (this.running && this.autoReconnect) {
             log.info("[{}] attempting to reconnect in {} seconds", peer.getDisplayName(), this.reconnectInterval);
@@ -153,10 +330,11 @@ public class ChunkyClient {
         long index = chunkIndex(chunkHolder.getChunkX(), chunkHolder.getChunkZ());
         ChunkRequest request = this.pendingChunkRequests.remove(index);
         if (request != null) {
-            request.getFuture().complete(chunkHolder);
+            request.complete(chunkHolder);
             return;
         }
 
+        chunkHolder.setExclusive(true);
         if (this.listener != null) {
             this.listener.onUnhandledChunkReceived(chunkHolder, peer);
         }
@@ -172,6 +350,62 @@ public class ChunkyClient {
         if (this.listener != null) {
             this.listener.onChunkRequestTimeout(request, peer);
         }
+        request.getFuture().completeExceptionally(new TimeoutException("Chunk request x=" + chunkX(index) + " z=" + chunkZ(index) + " timed out"));
+    }
+
+    protected void onPendingChunkFailed(long index, ChunkyPeer peer, Throwable error) {
+        ChunkRequest request = this.pendingChunkRequests.remove(index);
+        if (request == null) {
+            return;
+        }
+        log.info("[{}] pending chunk failed: x={} z={}", peer.getDisplayName(), chunkX(index), chunkZ(index));
+
+        if (this.listener != null) {
+            this.listener.onChunkRequestFailed(request, peer, error);
+        }
+        request.getFuture().completeExceptionally(error);
+    }
+
+    /**
+     * Finds peer which is not able to serve its queued requests and lets idle peer take over some of them.
+     * Closed or reconnecting peers are preferred, from busy peers only half of the queue can be taken.
+     * @return true if some peer was asked to give its requests
+     */
+    protected boolean stealRequests(ChunkyPeer thief) {
+        ChunkyPeer victim = null;
+        int victimCount = 0;
+        boolean victimClosed = false;
+
+        synchronized (this.peers) {
+            for (ChunkyPeer peer : this.peers) {
+                if (peer == thief) {
+                    continue;
+                }
+
+                boolean closed = !peer.canRequestChunks();
+                int queued = peer.getChunkRequests().size();
+                int count;
+                if (closed) {
+                    count = queued;
+                } else if (!peer.getPendingChunks().isEmpty()) {
+                    count = queued / 2;
+                } else {
+                    continue;
+                }
+
+                if (count > 0 && ((closed && !victimClosed) || (closed == victimClosed && count > victimCount))) {
+                    victim = peer;
+                    victimCount = count;
+                    victimClosed = closed;
+                }
+            }
+        }
+
+        if (victim == null) {
+            return false;
+        }
+        victim.giveRequests(thief, Math.min(STEAL_BATCH_SIZE, victimCount));
+        return true;
     }
 
     private ChunkyPeer assignRequest(long index, ChunkRequest request) {
@@ -179,23 +413,19 @@ public class ChunkyClient {
             return null;
         }
 
+        // Check if some peer will be requesting chunk in same area. If yes,
+        // we can expect our chunk to be sent than
+        ChunkyPeer regionPeer = this.regionIndex.getPeer(index);
+        if (regionPeer != null && (regionPeer.getPendingChunks().contains(index) || regionPeer.requestChunk(index))) {
+            return regionPeer;
+        }
+        // Region peer is closed or has full queue, use any other peer
+
         for (int i = 0; i < this.peerCount; i++) {
             ChunkyPeer peer = this.peerIterator.next();
-            Collection<Long> chunkRequests = peer.getChunkRequests();
-            Collection<Long> pendingChunks = peer.getPendingChunks();
-            if (pendingChunks.contains(index) || chunkRequests.contains(index)) {
+            if (peer.getPendingChunks().contains(index) || peer.getChunkRequests().contains(index)) {
                 return peer;
             }
-            // Shrink the radius a bit as our calculations may be bit different
-            int radius = Math.max(1, peer.getChunkRadius() - 1);
-            // Check if peer will be requesting chunk in same area. If yes,
-            // we can expect our chunk to be sent than
-            for (long chunkIndex : chunkRequests) {
-                if (isIndexInRadius(chunkX(chunkIndex), chunkZ(chunkIndex), radius, index)) {
-                    peer.offerChunkRequestUnsafe(index);
-                    return peer;
-                }
-            }
 
             if (peer.requestChunk(index)) {
                 return peer;
@@ -204,6 +434,47 @@ public class ChunkyClient {
         return null;
     }
 
+    /**
+     * Chunk decoding task, which can be failed if decode executor rejects it.
+     */
+    static class DecodeTask<T> implements Runnable {
+        private final Supplier<T> decoder;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        DecodeTask(Supplier<T> decoder) {
+            this.decoder = decoder;
+        }
+
+        CompletableFuture<T> getFuture() {
+            return this.future;
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.future.complete(this.decoder.get());
+            } catch (Throwable e) {
+                this.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Runs rejected task on the calling thread while executor is running, so full queue pushes back on peers.
+     * Once executor is shut down, decode tasks are failed instead of being silently discarded.
+     */
+    static class DecodeRejectionHandler implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (!executor.isShutdown()) {
+                task.run();
+            } else if (task instanceof DecodeTask) {
+                ((DecodeTask<?>) task).getFuture().completeExceptionally(new RejectedExecutionException("Decode executor was shut down"));
+            }
+        }
+    }
+
     @Setter
     @Accessors(fluent = true)
     public static class Builder {
@@ -215,10 +486,16 @@ public class ChunkyClient {
         private long reconnectInterval;
         private BlockPaletteFactory paletteFactory;
         private ChunkyListener listener;
+        private int pipelineWindow = 1;
+        private boolean adaptiveConcurrency;
+        private boolean zeroCopyDecoding;
+        private boolean lazyDecoding;
+        private int decodeThreads;
 
         public ChunkyClient build() {
             return new ChunkyClient(this.peerCount, minecraftVersion, this.targetAddress, this.maxPendingRequests, this.autoReconnect, this.reconnectInterval,
-                    this.paletteFactory, this.listener);
+                    this.paletteFactory, this.listener, this.pipelineWindow, this.adaptiveConcurrency,
+                    this.zeroCopyDecoding, this.lazyDecoding, this.decodeThreads);
         }
     }
 }
@@ -28,7 +28,6 @@ import com.nukkitx.protocol.bedrock.handler.BedrockPacketHandler;
 import com.nukkitx.protocol.bedrock.packet.*;
 import com.nukkitx.protocol.bedrock.util.EncryptionUtils;
 import dev.waterdog.chunky.common.data.chunk.ChunkHolder;
-import dev.waterdog.chunky.common.data.chunk.ChunkyBlockStorage;
 import dev.waterdog.chunky.common.data.chunk.SubChunkHolder;
 import dev.waterdog.chunky.common.data.login.LoginData;
 import dev.waterdog.chunky.common.data.login.LoginState;
@@ -37,12 +36,13 @@ import dev.waterdog.chunky.common.palette.BlockPaletteLegacy;
 import dev.waterdog.chunky.common.palette.VanillaBlockStates;
 import dev.waterdog.chunky.common.serializer.ChunkSerializer;
 import dev.waterdog.chunky.common.serializer.Serializers;
+import dev.waterdog.chunky.common.util.AdaptiveLimiter;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.EventLoop;
 import io.netty.util.concurrent.ScheduledFuture;
 import it.unimi.dsi.fastutil.longs.*;
-import it.unimi.dsi.fastutil.objects.ObjectArraySet;
+import lombok.Data;
 import lombok.Getter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -53,8 +53,11 @@ import java.net.URI;
 import java.security.interfaces.ECPublicKey;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static dev.waterdog.chunky.common.util.ChunkUtils.*;
 
@@ -62,6 +65,16 @@ public class ChunkyPeer implements BedrockPacketHandler {
 
     private static final Logger log = LogManager.getLogger("Chunky");
     private static final int SESSION_TIMEOUT = 5000;
+    private static final int PENDING_TIMEOUT = 1000 * 10;
+    // Requests are dispatched once pending work drains, tick only handles timeouts
+    private static final int TIMEOUT_CHECK_INTERVAL = 1000;
+    // Positions slower than this shrink the in-flight limit before they start timing out
+    private static final int SLOW_POSITION_THRESHOLD = PENDING_TIMEOUT / 3;
+    // Used if server does not limit count of sub chunk requests
+    private static final int MAX_SUBCHUNK_REQUESTS = 256;
+    private static final int MAX_SUBCHUNK_COLUMNS_IN_FLIGHT = 64;
+    // Count of times sub chunks of single column are requested before the request fails
+    private static final int MAX_SUBCHUNK_ATTEMPTS = 3;
 
     private final ChunkyClient parent;
     private final InetSocketAddress targetAddress;
@@ -79,16 +92,32 @@ public class ChunkyPeer implements BedrockPacketHandler {
 
     private ScheduledFuture<?> tickFuture;
 
-    private final List<Long> chunkRequests = new CopyOnWriteArrayList<>();
-    private final LongSet pendingChunks = LongSets.synchronize(new LongArraySet());
-    private final Long2ObjectMap<ChunkHolder> pendingSubChunks = Long2ObjectMaps.synchronize(new Long2ObjectArrayMap<>());
+    private final ChunkRequestQueue chunkRequests;
+    private final LongSet pendingChunks = LongSets.synchronize(new LongOpenHashSet());
+    // Columns waiting for sub chunks, accessed only from event loop
+    private final Long2ObjectMap<PendingColumn> pendingSubChunks = new Long2ObjectOpenHashMap<>();
+    // Columns waiting for sub chunks to be requested, accessed only from event loop
+    private final LongArrayFIFOQueue subChunkRequestQueue = new LongArrayFIFOQueue();
+    private int subChunkColumnsInFlight;
+    private int subChunkRequestLimit;
+    private boolean subChunkFlushScheduled;
+    // Last decode task of each chunk, so data of the same chunk is decoded in order. Accessed only from event loop
+    private final Long2ObjectMap<CompletableFuture<?>> decodeTasks = new Long2ObjectOpenHashMap<>();
+    // Positions we have teleported to, but have not received all chunks from yet
+    private final Deque<PendingPosition> pendingPositions = new ArrayDeque<>();
     private long lastRequest;
+    private final AtomicBoolean dispatchScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean stealPending = new AtomicBoolean(false);
+    private final AdaptiveLimiter positionLimiter;
 
     public ChunkyPeer(ChunkyClient parent, MinecraftVersion version, InetSocketAddress targetAddress, EventLoop eventLoop) {
         this.parent = parent;
         this.targetAddress = targetAddress;
         this.eventLoop = eventLoop;
         this.loginData = new LoginData(version);
+        this.chunkRequests = new ChunkRequestQueue(this, parent.getRegionIndex());
+        int minLimit = parent.isAdaptiveConcurrency() ? 1 : parent.getPipelineWindow();
+        this.positionLimiter = new AdaptiveLimiter(minLimit, parent.getPipelineWindow(), SLOW_POSITION_THRESHOLD);
     }
 
     public CompletableFuture<Void> start() {
@@ -131,7 +160,8 @@ public class ChunkyPeer implements BedrockPacketHandler {
 
     private void doSpawn() {
         this.loginState = LoginState.SPAWNED;
-        this.tickFuture = this.eventLoop.scheduleAtFixedRate(this::onTick, 0, 200, TimeUnit.MILLISECONDS);
+        this.tickFuture = this.eventLoop.scheduleAtFixedRate(this::onTick, TIMEOUT_CHECK_INTERVAL, TIMEOUT_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+        this.scheduleDispatch();
         log.info("[{}] has spawned and is ready for incoming chunks!", this.getDisplayName());
     }
 
@@ -162,6 +192,7 @@ public class ChunkyPeer implements BedrockPacketHandler {
             return false;
         }
         this.chunkRequests.add(chunkIndex);
+        this.scheduleDispatch();
         return true;
     }
 
@@ -171,92 +202,310 @@ public class ChunkyPeer implements BedrockPacketHandler {
         }
 
         long currTime = System.currentTimeMillis();
-        if (currTime > this.lastRequest + (1000 * 10)) {
+        if (currTime > this.lastRequest + PENDING_TIMEOUT) {
             LongIterator iterator = this.pendingChunks.iterator();
             while (iterator.hasNext()) {
                 this.parent.onPendingChunkTimeout(iterator.nextLong(), this);
                 iterator.remove();
             }
+            if (!this.pendingPositions.isEmpty()) {
+                this.pendingPositions.clear();
+                this.positionLimiter.onTimeout();
+            }
+        } else {
+            // In pipelined mode older positions may expire before the latest one
+            PendingPosition position;
+            while ((position = this.pendingPositions.peekFirst()) != null && currTime > position.getTimestamp() + PENDING_TIMEOUT) {
+                this.pendingPositions.pollFirst();
+                this.onPositionTimeout(position);
+                this.positionLimiter.onTimeout();
+            }
+        }
 
-            LongIterator subChunksIterator = this.pendingSubChunks.keySet().iterator();
-            while (subChunksIterator.hasNext()) {
-                this.parent.onPendingChunkTimeout(subChunksIterator.nextLong(), this);
-                subChunksIterator.remove();
+        this.checkSubChunkTimeouts(currTime);
+        this.dispatchRequests();
+    }
+
+    private void checkSubChunkTimeouts(long currTime) {
+        LongList expired = new LongArrayList();
+        for (Long2ObjectMap.Entry<PendingColumn> entry : this.pendingSubChunks.long2ObjectEntrySet()) {
+            if (currTime > entry.getValue().getDeadline()) {
+                expired.add(entry.getLongKey());
             }
         }
 
-        try {
-            // Remove duplicates
-            this.chunkRequests.removeIf((index) -> this.pendingChunks.contains((long) index));
-            // Request new chunks
-            if (!this.chunkRequests.isEmpty() && this.pendingChunks.isEmpty()) {
-                this.requestChunkInternal(this.chunkRequests.remove(0));
+        LongIterator iterator = expired.iterator();
+        while (iterator.hasNext()) {
+            long chunkIndex = iterator.nextLong();
+            PendingColumn column = this.pendingSubChunks.get(chunkIndex);
+            // Columns which did not get free slot in time are not retried
+            if (!column.isInFlight() || !this.retrySubChunkColumn(chunkIndex, column)) {
+                this.removeSubChunkColumn(chunkIndex);
+                this.parent.onPendingChunkTimeout(chunkIndex, this);
             }
+        }
+
+        if (!expired.isEmpty()) {
+            this.flushSubChunkRequests();
+        }
+    }
+
+    private void scheduleDispatch() {
+        if (this.eventLoop.inEventLoop()) {
+            this.dispatchRequests();
+        } else if (this.dispatchScheduled.compareAndSet(false, true)) {
+            this.eventLoop.execute(() -> {
+                this.dispatchScheduled.set(false);
+                this.dispatchRequests();
+            });
+        }
+    }
+
+    private void dispatchRequests() {
+        if (!this.canRequestChunks() || this.session == null || this.session.isClosed()) {
+            return;
+        }
+
+        try {
+            this.dispatchRequestsInternal();
         } catch (Exception e) {
-            log.error("[{}] Unable to tick", this.getDisplayName(), e);
+            log.error("[{}] Unable to dispatch requests", this.getDisplayName(), e);
+        }
+    }
+
+    private void dispatchRequestsInternal() {
+        // Request new chunks while we have free space in the pipeline
+        while (!this.chunkRequests.isEmpty() && this.pendingPositions.size() < this.positionLimiter.getLimit()) {
+            long index = this.chunkRequests.peekFirst();
+            if (this.pendingChunks.contains(index)) {
+                // Skip duplicates
+                this.chunkRequests.remove(index);
+            } else if (!this.requestChunkInternal(index)) {
+                // Next position is too far, wait until in-flight positions are received
+                break;
+            }
+        }
+
+        // We have free capacity, but nothing to do, so try to help other peers
+        if (this.chunkRequests.isEmpty() && this.pendingPositions.size() < this.positionLimiter.getLimit() &&
+                this.stealPending.compareAndSet(false, true) && !this.parent.stealRequests(this)) {
+            this.stealPending.set(false);
         }
     }
 
-    private void requestChunkInternal(long index) {
+    /**
+     * Moves queued requests closest to the thief position to thief queue.
+     * Requests are removed on event loop of this peer and offered to thief after queue monitor is released,
+     * so two peers stealing from each other never wait for each other's monitor.
+     */
+    protected void giveRequests(ChunkyPeer thief, int count) {
+        int chunkX = thief.getChunkX();
+        int chunkZ = thief.getChunkZ();
+        this.eventLoop.execute(() -> {
+            long[] stolen = this.chunkRequests.removeNearest(chunkX, chunkZ, count);
+            for (long index : stolen) {
+                thief.offerChunkRequestUnsafe(index);
+            }
+            if (stolen.length > 0 && log.isDebugEnabled()) {
+                log.debug("[{}] {} chunk requests were taken over by {}", this.getDisplayName(), stolen.length, thief.getDisplayName());
+            }
+            thief.stealPending.set(false);
+        });
+    }
+
+    private void onPositionTimeout(PendingPosition position) {
+        LongIterator iterator = position.getChunks().iterator();
+        while (iterator.hasNext()) {
+            long chunkIndex = iterator.nextLong();
+            if (this.pendingChunks.remove(chunkIndex)) {
+                this.parent.onPendingChunkTimeout(chunkIndex, this);
+            }
+        }
+    }
+
+    private void onPendingChunkReceived(long chunkIndex) {
+        boolean completed = false;
+        Iterator<PendingPosition> iterator = this.pendingPositions.iterator();
+        while (iterator.hasNext()) {
+            PendingPosition position = iterator.next();
+            if (position.getChunks().remove(chunkIndex) && position.getChunks().isEmpty()) {
+                long latency = System.currentTimeMillis() - position.getTimestamp();
+                this.parent.getPositionLatency().record(latency);
+                if (this.positionLimiter.onSample(latency) && log.isDebugEnabled()) {
+                    log.debug("[{}] Changed in-flight positions limit: {}", this.getDisplayName(), this.positionLimiter.getLimit());
+                }
+                iterator.remove();
+                completed = true;
+            }
+        }
+
+        // Advance right away instead of waiting for next tick
+        if (completed) {
+            this.dispatchRequests();
+        }
+    }
+
+    /**
+     * Teleports to the chunk and removes it from queue.
+     * @return false if new position would not cover chunks of in-flight positions
+     */
+    private boolean requestChunkInternal(long index) {
         int chunkX = chunkX(index);
         int chunkZ = chunkZ(index);
-        this.pendingChunks.add(index);
-        if (log.isDebugEnabled()) {
-            log.debug("[{}] Requesting chunk x={} z={}", this.getDisplayName(), chunkX, chunkZ);
-        }
 
         // Calculate all chunks that server will send us
         // Firstly we need all chunks from new position
         int radius = Math.max(1, this.getChunkRadius() - 1);
-        LongSet newChunks = new LongArraySet();
+        LongSet newChunks = new LongOpenHashSet();
         checkChunksInRadius(chunkX, chunkZ, radius, newChunks::add);
-        // Remove chunks that we already got
-        checkChunksInRadius(this.getChunkX(), this.getChunkZ(), radius, newChunks::remove);
+
+        // Server streams chunks only around the latest position, so chunks which were not received yet must stay in view
+        for (PendingPosition position : this.pendingPositions) {
+            if (!newChunks.containsAll(position.getChunks())) {
+                return false;
+            }
+        }
+
+        this.chunkRequests.remove(index);
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Requesting chunk x={} z={}", this.getDisplayName(), chunkX, chunkZ);
+        }
+
+        // Remove chunks that we already got, chunks of in-flight positions are still expected
+        checkChunksInRadius(this.getChunkX(), this.getChunkZ(), radius, oldIndex -> {
+            if (!this.pendingChunks.contains(oldIndex)) {
+                newChunks.remove(oldIndex);
+            }
+        });
+        this.pendingChunks.add(index);
         this.pendingChunks.addAll(newChunks);
         this.chunkRequests.removeAll(newChunks);
+
+        newChunks.add(index);
+        this.pendingPositions.addLast(new PendingPosition(index, newChunks, System.currentTimeMillis()));
         // Change position
         this.clientData.updateAndSendPosition(Vector3f.from((chunkX << 4) + 10, 255, (chunkZ << 4) + 10), this.session);
         this.lastRequest = System.currentTimeMillis();
+        return true;
     }
 
     protected void offerChunkRequestUnsafe(long index) {
         this.chunkRequests.add(index);
+        this.scheduleDispatch();
+    }
+
+    private void queueSubChunksRequest(long index, ChunkHolder holder, int requestsLimit) {
+        PendingColumn column = new PendingColumn(holder);
+        column.setDeadline(System.currentTimeMillis() + PENDING_TIMEOUT);
+        PendingColumn previous = this.pendingSubChunks.put(index, column);
+        if (previous != null && previous.isInFlight()) {
+            this.subChunkColumnsInFlight--;
+        }
+        this.subChunkRequestQueue.enqueue(index);
+        this.subChunkRequestLimit = requestsLimit;
+
+        // Wait until all chunks from current batch are handled, so we can request them together
+        if (!this.subChunkFlushScheduled) {
+            this.subChunkFlushScheduled = true;
+            this.eventLoop.execute(() -> {
+                this.subChunkFlushScheduled = false;
+                this.flushSubChunkRequests();
+            });
+        }
     }
 
-    private void requestSubChunksInternal(long index, ChunkHolder holder, int requestsLimit) {
+    private void flushSubChunkRequests() {
+        if (this.session == null || this.session.isClosed()) {
+            return;
+        }
+
         int minY = this.clientData.getDimension() == 0 ? -4 : 0;
         int maxY = this.clientData.getDimension() == 0 ? 20 : 16;
-        Vector3i centerPos = Vector3i.from(holder.getChunkX(), minY, holder.getChunkZ());
-
-        int requests = 0;
+        int requestsLimit = this.subChunkRequestLimit > 0 ? this.subChunkRequestLimit : MAX_SUBCHUNK_REQUESTS;
         SubChunkRequestPacket packet = null;
-        Set<SubChunkRequestPacket> packets = new ObjectArraySet<>();
 
-        for (int y = minY; y < maxY; y++, requests++) {
-            if (packet == null || requests >= requestsLimit) {
-                if (packet != null && !packet.getPositionOffsets().isEmpty()) {
-                    packets.add(packet);
-                }
-                packet = new SubChunkRequestPacket();
-                packet.setDimension(this.clientData.getDimension());
-                packet.setSubChunkPosition(centerPos);
-                requests = 0;
+        while (!this.subChunkRequestQueue.isEmpty() && this.subChunkColumnsInFlight < MAX_SUBCHUNK_COLUMNS_IN_FLIGHT) {
+            PendingColumn column = this.pendingSubChunks.get(this.subChunkRequestQueue.dequeueLong());
+            if (column == null || column.isInFlight()) {
+                continue; // Timed out or already requested
             }
+            ChunkHolder holder = column.getHolder();
+
+            // Offsets from single center can point to other columns too
+            for (int y = minY; y < maxY; y++) {
+                if (packet == null || packet.getPositionOffsets().size() >= requestsLimit || !canOffset(packet.getSubChunkPosition(), holder)) {
+                    if (packet != null) {
+                        this.session.sendPacket(packet);
+                    }
+                    packet = new SubChunkRequestPacket();
+                    packet.setDimension(this.clientData.getDimension());
+                    packet.setSubChunkPosition(Vector3i.from(holder.getChunkX(), minY, holder.getChunkZ()));
+                }
 
-            Vector3i offset = Vector3i.from(0, y - centerPos.getY(), 0);
-            packet.getPositionOffsets().add(offset);
-            if (log.isDebugEnabled()) {
-                log.debug("Chunk x={} z={} requesting offset: [{}]", holder.getChunkX(), holder.getChunkZ(), offset);
+                Vector3i centerPos = packet.getSubChunkPosition();
+                Vector3i offset = Vector3i.from(holder.getChunkX() - centerPos.getX(), y - centerPos.getY(), holder.getChunkZ() - centerPos.getZ());
+                packet.getPositionOffsets().add(offset);
+                if (log.isDebugEnabled()) {
+                    log.debug("Chunk x={} z={} requesting offset: [{}]", holder.getChunkX(), holder.getChunkZ(), offset);
+                }
             }
+            column.setInFlight(true);
+            column.setAttempts(column.getAttempts() + 1);
+            column.setDeadline(System.currentTimeMillis() + PENDING_TIMEOUT);
+            this.subChunkColumnsInFlight++;
+        }
+
+        if (packet != null && !packet.getPositionOffsets().isEmpty()) {
+            this.session.sendPacket(packet);
+        }
+    }
+
+    /**
+     * Queues column to be requested again, sub chunks which were already received are kept.
+     * @return false if column was requested too many times
+     */
+    private boolean retrySubChunkColumn(long chunkIndex, PendingColumn column) {
+        if (column.isInFlight()) {
+            column.setInFlight(false);
+            this.subChunkColumnsInFlight--;
+        }
+
+        if (column.getAttempts() >= MAX_SUBCHUNK_ATTEMPTS) {
+            return false;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("[{}] Retrying sub chunks of x={} z={}", this.getDisplayName(), chunkX(chunkIndex), chunkZ(chunkIndex));
+        }
+        column.setDeadline(System.currentTimeMillis() + PENDING_TIMEOUT);
+        this.subChunkRequestQueue.enqueue(chunkIndex);
+        return true;
+    }
+
+    private void removeSubChunkColumn(long chunkIndex) {
+        PendingColumn column = this.pendingSubChunks.remove(chunkIndex);
+        if (column != null && column.isInFlight()) {
+            this.subChunkColumnsInFlight--;
         }
+    }
 
-        if (!packet.getPositionOffsets().isEmpty()) {
-            packets.add(packet);
+    private void onSubChunkColumnFailed(long chunkIndex, PendingColumn column, Throwable error) {
+        if (!column.isInFlight()) {
+            return; // Already queued for retry
         }
 
-        this.pendingSubChunks.put(index, holder);
+        if (!this.retrySubChunkColumn(chunkIndex, column)) {
+            this.removeSubChunkColumn(chunkIndex);
+            this.parent.onPendingChunkFailed(chunkIndex, this, error);
+        }
+        this.flushSubChunkRequests();
+    }
 
-        packets.forEach(this.session::sendPacket);
+    private static boolean canOffset(Vector3i centerPos, ChunkHolder holder) {
+        // Offsets are sent as bytes
+        int offsetX = holder.getChunkX() - centerPos.getX();
+        int offsetZ = holder.getChunkZ() - centerPos.getZ();
+        return offsetX >= Byte.MIN_VALUE && offsetX <= Byte.MAX_VALUE && offsetZ >= Byte.MIN_VALUE && offsetZ <= Byte.MAX_VALUE;
     }
 
     protected void offerChunkUnsafe(long index) {
@@ -283,12 +532,19 @@ public class ChunkyPeer implements BedrockPacketHandler {
         return this.clientData.getChunkRadius();
     }
 
-    public Collection<Long> getChunkRequests() {
-        return Collections.unmodifiableCollection(this.chunkRequests);
+    public ChunkRequestQueue getChunkRequests() {
+        return this.chunkRequests;
+    }
+
+    public LongSet getPendingChunks() {
+        return LongSets.unmodifiable(this.pendingChunks);
     }
 
-    public Collection<Long> getPendingChunks() {
-        return Collections.unmodifiableCollection(this.pendingChunks);
+    /**
+     * @return count of positions this peer may currently have requested at once
+     */
+    public int getConcurrencyLimit() {
+        return this.positionLimiter.getLimit();
     }
 
     public boolean canRequestChunks() {
@@ -409,7 +665,11 @@ public class ChunkyPeer implements BedrockPacketHandler {
         }
 
         long chunkIndex = chunkIndex(packet.getChunkX(), packet.getChunkZ());
-        if (!this.pendingChunks.remove(chunkIndex) && log.isDebugEnabled()) {
+        // Chunk may be queued, but server sent it before we got to it
+        this.chunkRequests.remove(chunkIndex);
+        if (this.pendingChunks.remove(chunkIndex)) {
+            this.onPendingChunkReceived(chunkIndex);
+        } else if (log.isDebugEnabled()) {
             log.debug("[{}] Not requested chunk: x={} z={}", this.getDisplayName(), packet.getChunkX(), packet.getChunkZ());
         }
 
@@ -417,21 +677,86 @@ public class ChunkyPeer implements BedrockPacketHandler {
                 (this.clientData.getDimension() == 0 ? 24 : 16) :
                 packet.getSubChunksLength();
         ChunkHolder chunkHolder = new ChunkHolder(packet.getChunkX(), packet.getChunkZ(), subChunksCount, this.blockPalette);
+        chunkHolder.setZeroCopy(this.parent.isZeroCopyDecoding());
+        chunkHolder.setLazy(this.parent.isLazyDecoding());
 
-        ByteBuf buffer = Unpooled.wrappedBuffer(packet.getData());
+        byte[] data = packet.getData();
         if (packet.isRequestSubChunks()) {
             chunkHolder.setSubChunks(new SubChunkHolder[subChunksCount]);
-
-            ChunkSerializer serializer = Serializers.getChunkSerializer(this.parent.getMinecraftVersion().getProtocol());
-            serializer.readLevelData(buffer, chunkHolder);
-            this.requestSubChunksInternal(chunkIndex, chunkHolder, packet.getSubChunkLimit());
+            int subChunkLimit = packet.getSubChunkLimit();
+
+            this.decode(chunkIndex, () -> {
+                ChunkSerializer serializer = Serializers.getChunkSerializer(this.parent.getMinecraftVersion().getProtocol());
+                serializer.readLevelData(Unpooled.wrappedBuffer(data), chunkHolder);
+                return chunkHolder;
+            }, holder -> this.queueSubChunksRequest(chunkIndex, holder, subChunkLimit),
+                    error -> this.parent.onPendingChunkFailed(chunkIndex, this, error));
         } else {
-            Serializers.deserializeChunk(buffer, chunkHolder, this.blockPalette, this.loginData.getVersion().getProtocol());
-            this.parent.onChunkDeserializedCallback(chunkHolder, this);
+            int protocol = this.loginData.getVersion().getProtocol();
+            this.decode(chunkIndex, () -> {
+                Serializers.deserializeChunk(Unpooled.wrappedBuffer(data), chunkHolder, this.blockPalette, protocol);
+                return chunkHolder;
+            }, holder -> this.parent.onChunkDeserializedCallback(holder, this),
+                    error -> this.parent.onPendingChunkFailed(chunkIndex, this, error));
         }
         return true;
     }
 
+    /**
+     * Fails decode tasks which were not finished yet, so callbacks waiting for them are called.
+     */
+    protected void failDecodeTasks(Throwable error) {
+        this.eventLoop.execute(() -> {
+            for (CompletableFuture<?> future : this.decodeTasks.values()) {
+                future.completeExceptionally(error);
+            }
+            this.decodeTasks.clear();
+        });
+    }
+
+    /**
+     * Runs decoder on decode executor after all previous decoders of the same chunk finished.
+     * Callbacks are always called on the event loop.
+     */
+    private <T> void decode(long chunkIndex, Supplier<T> decoder, Consumer<T> callback, Consumer<Throwable> errorCallback) {
+        ExecutorService executor = this.parent.getDecodeExecutor();
+        if (executor == null) {
+            T result;
+            try {
+                result = decoder.get();
+            } catch (Exception e) {
+                log.error("[{}] Unable to decode chunk x={} z={}", this.getDisplayName(), chunkX(chunkIndex), chunkZ(chunkIndex), e);
+                errorCallback.accept(e);
+                return;
+            }
+            callback.accept(result);
+            return;
+        }
+
+        ChunkyClient.DecodeTask<T> task = new ChunkyClient.DecodeTask<>(decoder);
+        CompletableFuture<T> future = task.getFuture();
+        CompletableFuture<?> previous = this.decodeTasks.get(chunkIndex);
+        if (previous == null) {
+            executor.execute(task);
+        } else {
+            previous.whenComplete((result, error) -> executor.execute(task));
+        }
+        this.decodeTasks.put(chunkIndex, future);
+
+        future.whenCompleteAsync((result, error) -> {
+            if (this.decodeTasks.get(chunkIndex) == future) {
+                this.decodeTasks.remove(chunkIndex);
+            }
+
+            if (error == null) {
+                callback.accept(result);
+            } else {
+                log.error("[{}] Unable to decode chunk x={} z={}", this.getDisplayName(), chunkX(chunkIndex), chunkZ(chunkIndex), error);
+                errorCallback.accept(error);
+            }
+        }, this.eventLoop);
+    }
+
     @Override
     public boolean handle(BlockEntityDataPacket packet) {
         if (this.parent.getListener() != null) {
@@ -455,16 +780,17 @@ public class ChunkyPeer implements BedrockPacketHandler {
         long chunkIndex = chunkIndex(chunkX, chunkZ);
 
         SubChunkRequestResult result = subChunkData.getResult();
-        if (result != SubChunkRequestResult.SUCCESS && result != SubChunkRequestResult.SUCCESS_ALL_AIR) {
+        boolean success = result == SubChunkRequestResult.SUCCESS || result == SubChunkRequestResult.SUCCESS_ALL_AIR;
+        if (!success) {
             log.debug("CenterPos x={} z={} y={} subChunk [{}] with result {}", centerPos.getX(), centerPos.getZ(), centerPos.getY(), subChunkData.getPosition(), result);
-            return;
         }
 
-        ChunkHolder chunkHolder = this.pendingSubChunks.get(chunkIndex);
-        if (chunkHolder == null) {
+        PendingColumn column = this.pendingSubChunks.get(chunkIndex);
+        if (column == null) {
             log.debug("[{}] Not requested chunk: x={} z={} y={} ", this.getDisplayName(), chunkX, chunkZ, subChunkY);
             return;
         }
+        ChunkHolder chunkHolder = column.getHolder();
 
         int offsetY = this.clientData.getDimension() == 0 ? 4 : 0;
         int realSubChunkY = subChunkY + offsetY;
@@ -474,24 +800,63 @@ public class ChunkyPeer implements BedrockPacketHandler {
             return;
         }
 
-        SubChunkHolder holder;
-        if (result == SubChunkRequestResult.SUCCESS_ALL_AIR) {
-            holder = SubChunkHolder.emptyHolder(subChunkY);
-        } else {
-            ByteBuf buffer = Unpooled.wrappedBuffer(subChunkData.getData());
-            int subChunkVersion = buffer.readUnsignedByte();
-            ChunkyBlockStorage[] storages = Serializers.deserializeSubChunk(buffer, chunkHolder, blockPalette, subChunkVersion);
-            holder = new SubChunkHolder(subChunkY, storages);
+        if (result == SubChunkRequestResult.SUCCESS_ALL_AIR || result == SubChunkRequestResult.Y_INDEX_OUT_OF_BOUNDS) {
+            // Server has no blocks there
+            this.onSubChunkDecoded(chunkIndex, chunkHolder, realSubChunkY, SubChunkHolder.emptyHolder(subChunkY));
+            return;
+        }
+
+        if (!success) {
+            // Do not save the column with holes, request it again or fail
+            this.onSubChunkColumnFailed(chunkIndex, column, new IllegalStateException(
+                    "Sub chunk request x=" + chunkX + " z=" + chunkZ + " y=" + subChunkY + " failed: " + result));
+            return;
+        }
 
+        byte[] data = subChunkData.getData();
+        this.decode(chunkIndex, () -> {
+            ByteBuf buffer = Unpooled.wrappedBuffer(data);
+            SubChunkHolder holder = Serializers.deserializeSubChunkHolder(buffer, subChunkY, chunkHolder, blockPalette);
+
+            // Decoders of the same chunk do not run concurrently
             if (buffer.readableBytes() > 0) {
                 chunkHolder.addBlockEntities(buffer);
             }
+            return holder;
+        }, holder -> this.onSubChunkDecoded(chunkIndex, chunkHolder, realSubChunkY, holder), error -> {
+            PendingColumn currentColumn = this.pendingSubChunks.get(chunkIndex);
+            if (currentColumn != null && currentColumn.getHolder() == chunkHolder) {
+                this.onSubChunkColumnFailed(chunkIndex, currentColumn, error);
+            }
+        });
+    }
+
+    private void onSubChunkDecoded(long chunkIndex, ChunkHolder chunkHolder, int realSubChunkY, SubChunkHolder holder) {
+        PendingColumn column = this.pendingSubChunks.get(chunkIndex);
+        if (column == null || column.getHolder() != chunkHolder) {
+            return; // Timed out while decoding
         }
         chunkHolder.getSubChunks()[realSubChunkY] = holder;
 
         if (chunkHolder.hasAllSubChunks()) {
-            this.pendingSubChunks.remove(chunkIndex);
+            this.removeSubChunkColumn(chunkIndex);
             this.parent.onChunkDeserializedCallback(chunkHolder, this);
+            this.flushSubChunkRequests();
         }
     }
+
+    @Data
+    private static class PendingPosition {
+        private final long index;
+        private final LongSet chunks;
+        private final long timestamp;
+    }
+
+    @Data
+    private static class PendingColumn {
+        private final ChunkHolder holder;
+        private long deadline;
+        private int attempts;
+        private boolean inFlight;
+    }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.network;
+
+import dev.waterdog.chunky.common.data.login.LoginState;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import static dev.waterdog.chunky.common.util.ChunkUtils.*;
+
+/**
+ * Grid of regions mapped to the peer which has queued requests in that region.
+ * Requests for chunks in the same region are assigned to the same peer, so they can be
+ * received with a single teleport. Chunks close to region border are matched with neighbouring regions too.
+ * Region is owned until its peer dequeues all of its requests in the region, also when the requests
+ * are handed over to other peer, so counts always match peer queues.
+ * Regions are split to independently locked stripes, so peers queueing in different regions rarely contend.
+ */
+public class PeerRegionIndex {
+
+    // Region of 8x8 chunks fits into the default chunk radius
+    public static final int REGION_SHIFT = 3;
+    private static final int REGION_SIZE = 1 << REGION_SHIFT;
+
+    private static final int STRIPE_BITS = 5;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+
+    private final Long2ObjectOpenHashMap<Region>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    public PeerRegionIndex() {
+        this.stripes = new Long2ObjectOpenHashMap[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            this.stripes[i] = new Long2ObjectOpenHashMap<>();
+        }
+    }
+
+    public static long regionIndex(long chunkIndex) {
+        return chunkIndex(chunkX(chunkIndex) >> REGION_SHIFT, chunkZ(chunkIndex) >> REGION_SHIFT);
+    }
+
+    private Long2ObjectOpenHashMap<Region> stripe(long regionIndex) {
+        // Use high bits, low bits are used by the stripe map itself
+        return this.stripes[(int) (HashCommon.mix(regionIndex) >>> (Long.SIZE - STRIPE_BITS))];
+    }
+
+    /**
+     * Finds peer which has queued requests in region of the chunk or in the three regions closest to it,
+     * so chunk just across region border is still requested by peer working next to it.
+     * @return owner of the closest region which is not closed, or null
+     */
+    public ChunkyPeer getPeer(long chunkIndex) {
+        int chunkX = chunkX(chunkIndex);
+        int chunkZ = chunkZ(chunkIndex);
+        int regionX = chunkX >> REGION_SHIFT;
+        int regionZ = chunkZ >> REGION_SHIFT;
+        int neighbourX = (chunkX & (REGION_SIZE - 1)) < REGION_SIZE / 2 ? regionX - 1 : regionX + 1;
+        int neighbourZ = (chunkZ & (REGION_SIZE - 1)) < REGION_SIZE / 2 ? regionZ - 1 : regionZ + 1;
+
+        ChunkyPeer peer = this.getRegionPeer(chunkIndex(regionX, regionZ));
+        if (peer == null) {
+            peer = this.getRegionPeer(chunkIndex(neighbourX, regionZ));
+        }
+        if (peer == null) {
+            peer = this.getRegionPeer(chunkIndex(regionX, neighbourZ));
+        }
+        if (peer == null) {
+            peer = this.getRegionPeer(chunkIndex(neighbourX, neighbourZ));
+        }
+        return peer;
+    }
+
+    private ChunkyPeer getRegionPeer(long regionIndex) {
+        Long2ObjectOpenHashMap<Region> stripe = this.stripe(regionIndex);
+        ChunkyPeer peer;
+        synchronized (stripe) {
+            Region region = stripe.get(regionIndex);
+            peer = region == null ? null : region.peer;
+        }
+        // Closed peer keeps its regions until its requests are taken over
+        return peer == null || peer.getLoginState() == LoginState.CLOSED ? null : peer;
+    }
+
+    void onQueued(long chunkIndex, ChunkyPeer peer) {
+        long regionIndex = regionIndex(chunkIndex);
+        Long2ObjectOpenHashMap<Region> stripe = this.stripe(regionIndex);
+        synchronized (stripe) {
+            Region region = stripe.get(regionIndex);
+            if (region == null) {
+                stripe.put(regionIndex, region = new Region(peer));
+            }
+
+            if (region.peer == peer) {
+                region.count++;
+            }
+        }
+    }
+
+    void onDequeued(long chunkIndex, ChunkyPeer peer) {
+        long regionIndex = regionIndex(chunkIndex);
+        Long2ObjectOpenHashMap<Region> stripe = this.stripe(regionIndex);
+        synchronized (stripe) {
+            Region region = stripe.get(regionIndex);
+            if (region != null && region.peer == peer && --region.count <= 0) {
+                stripe.remove(regionIndex);
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Long2ObjectOpenHashMap<Region> stripe : this.stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private static class Region {
+        private final ChunkyPeer peer;
+        private int count;
+
+        private Region(ChunkyPeer peer) {
+            this.peer = peer;
+        }
+    }
+}
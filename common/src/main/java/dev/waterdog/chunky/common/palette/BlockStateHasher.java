@@ -0,0 +1,98 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.palette;
+
+import com.nukkitx.nbt.NbtMap;
+import it.unimi.dsi.fastutil.HashCommon;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes 64-bit fingerprint of block state. Fingerprint does not depend on order of compound entries.
+ * It walks whole tree, so it is used for content hashes and as fallback key of {@link BlockStateIndex},
+ * where hits are always confirmed by equals.
+ */
+public class BlockStateHasher {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    public static long fingerprint(NbtMap state) {
+        return hashCompound(state);
+    }
+
+    private static long hashCompound(NbtMap compound) {
+        long hash = HashCommon.mix((long) compound.size());
+        for (Map.Entry<String, Object> entry : compound.entrySet()) {
+            // Sum does not depend on iteration order
+            hash += HashCommon.mix(hashString(entry.getKey()) * 31 + hashValue(entry.getValue()));
+        }
+        return hash;
+    }
+
+    private static long hashValue(Object value) {
+        if (value instanceof String) {
+            return hashString((String) value);
+        } else if (value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long) {
+            return HashCommon.mix(((Number) value).longValue() ^ typeSeed(value));
+        } else if (value instanceof Float) {
+            return HashCommon.mix(Float.floatToIntBits((Float) value) ^ typeSeed(value));
+        } else if (value instanceof Double) {
+            return HashCommon.mix(Double.doubleToLongBits((Double) value) ^ typeSeed(value));
+        } else if (value instanceof NbtMap) {
+            return hashCompound((NbtMap) value);
+        } else if (value instanceof List) {
+            long hash = FNV_OFFSET;
+            for (Object element : (List<?>) value) {
+                hash = (hash ^ hashValue(element)) * FNV_PRIME;
+            }
+            return hash;
+        } else if (value instanceof byte[]) {
+            long hash = FNV_OFFSET;
+            for (byte element : (byte[]) value) {
+                hash = (hash ^ element) * FNV_PRIME;
+            }
+            return hash;
+        } else if (value instanceof int[]) {
+            long hash = FNV_OFFSET;
+            for (int element : (int[]) value) {
+                hash = (hash ^ element) * FNV_PRIME;
+            }
+            return hash;
+        } else if (value instanceof long[]) {
+            long hash = FNV_OFFSET;
+            for (long element : (long[]) value) {
+                hash = (hash ^ element) * FNV_PRIME;
+            }
+            return hash;
+        }
+        return value == null ? 0 : value.hashCode();
+    }
+
+    private static long hashString(String value) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return HashCommon.mix(hash);
+    }
+
+    private static long typeSeed(Object value) {
+        // Different numeric tag types with same value are different states
+        return (long) value.getClass().getSimpleName().hashCode() << 32;
+    }
+}
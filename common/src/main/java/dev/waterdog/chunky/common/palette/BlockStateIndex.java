@@ -0,0 +1,174 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.palette;
+
+import com.google.common.base.Preconditions;
+import com.nukkitx.nbt.NbtMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of block states by their position in the list, which is runtime id of the state.
+ * States are keyed by block name and their properties packed into a long, where each property value is
+ * replaced by its index among values registered for that block. Lookup so needs only one pass over
+ * the properties compound instead of hashing whole tree, and hits are confirmed by equals against registered state.
+ * States without name and properties compound, or blocks whose properties do not fit into 63 bits
+ * are indexed by {@link BlockStateHasher} fingerprint instead.
+ */
+public class BlockStateIndex {
+
+    private final List<NbtMap> states;
+    private final Map<String, BlockType> types = new Object2ObjectOpenHashMap<>();
+    private final Long2IntMap fingerprint2Index = new Long2IntOpenHashMap();
+
+    public BlockStateIndex(List<NbtMap> states) {
+        this.states = states;
+        this.fingerprint2Index.defaultReturnValue(-1);
+
+        // Property domains must be known before packing, so collect them first
+        for (NbtMap state : states) {
+            Object name = state.get("name");
+            Object properties = state.get("states");
+            if (name instanceof String && properties instanceof NbtMap) {
+                this.types.computeIfAbsent((String) name, key -> new BlockType()).addProperties((NbtMap) properties);
+            }
+        }
+        this.types.values().forEach(BlockType::computeLayout);
+
+        for (int i = 0; i < states.size(); i++) {
+            this.register(states.get(i), i);
+        }
+    }
+
+    private void register(NbtMap state, int index) {
+        BlockType type = this.getType(state);
+        long key = type == null ? -1 : type.pack(state.getCompound("states"));
+        if (key != -1) {
+            int previous = type.packed2Index.putIfAbsent(key, index);
+            if (previous == -1) {
+                return;
+            }
+            Preconditions.checkArgument(!this.states.get(previous).equals(state), "Mapping for state is already created: " + state);
+            // Same name and properties, but other tags differ, keep it findable by fingerprint
+        }
+
+        long fingerprint = BlockStateHasher.fingerprint(state);
+        Preconditions.checkArgument(!this.fingerprint2Index.containsKey(fingerprint), "Mapping for state is already created: " + state);
+        this.fingerprint2Index.put(fingerprint, index);
+    }
+
+    /**
+     * @param state block state to lookup.
+     * @return index of equal state or -1 if there is no such state.
+     */
+    public int indexOf(NbtMap state) {
+        BlockType type = this.getType(state);
+        if (type != null) {
+            long key = type.pack(state.getCompound("states"));
+            int index = key == -1 ? -1 : type.packed2Index.get(key);
+            if (index != -1 && this.states.get(index).equals(state)) {
+                return index;
+            }
+        }
+
+        if (this.fingerprint2Index.isEmpty()) {
+            return -1;
+        }
+        int index = this.fingerprint2Index.get(BlockStateHasher.fingerprint(state));
+        return index != -1 && this.states.get(index).equals(state) ? index : -1;
+    }
+
+    private BlockType getType(NbtMap state) {
+        Object name = state.get("name");
+        if (!(name instanceof String) || !(state.get("states") instanceof NbtMap)) {
+            return null;
+        }
+        return this.types.get(name);
+    }
+
+    private static class BlockType {
+        private final Object2IntMap<String> propertyIndexes = new Object2IntOpenHashMap<>();
+        private final List<Object2IntMap<Object>> values = new ArrayList<>();
+        private int[] shifts;
+        private boolean packable;
+        private final Long2IntMap packed2Index = new Long2IntOpenHashMap();
+
+        private BlockType() {
+            this.propertyIndexes.defaultReturnValue(-1);
+            this.packed2Index.defaultReturnValue(-1);
+        }
+
+        private void addProperties(NbtMap properties) {
+            for (Map.Entry<String, Object> entry : properties.entrySet()) {
+                int propertyIndex = this.propertyIndexes.getInt(entry.getKey());
+                if (propertyIndex == -1) {
+                    propertyIndex = this.values.size();
+                    this.propertyIndexes.put(entry.getKey(), propertyIndex);
+                    Object2IntMap<Object> values = new Object2IntOpenHashMap<>();
+                    values.defaultReturnValue(-1);
+                    this.values.add(values);
+                }
+
+                Object2IntMap<Object> values = this.values.get(propertyIndex);
+                if (!values.containsKey(entry.getValue())) {
+                    // Value ids start from 1, so missing property packs to 0
+                    values.put(entry.getValue(), values.size() + 1);
+                }
+            }
+        }
+
+        private void computeLayout() {
+            this.shifts = new int[this.values.size()];
+            int shift = 0;
+            for (int i = 0; i < this.values.size(); i++) {
+                this.shifts[i] = shift;
+                shift += Integer.SIZE - Integer.numberOfLeadingZeros(this.values.get(i).size());
+            }
+            // Highest bit stays clear, so packed key is never -1
+            this.packable = shift < Long.SIZE;
+        }
+
+        /**
+         * @return packed properties or -1 if properties contain unknown key or value.
+         */
+        private long pack(NbtMap properties) {
+            if (!this.packable) {
+                return -1;
+            }
+
+            long key = 0;
+            for (Map.Entry<String, Object> entry : properties.entrySet()) {
+                int propertyIndex = this.propertyIndexes.getInt(entry.getKey());
+                if (propertyIndex == -1) {
+                    return -1;
+                }
+                int valueId = this.values.get(propertyIndex).getInt(entry.getValue());
+                if (valueId == -1) {
+                    return -1;
+                }
+                key |= (long) valueId << this.shifts[propertyIndex];
+            }
+            return key;
+        }
+    }
+}
@@ -19,18 +19,16 @@ import com.google.common.base.Preconditions;
 import com.nukkitx.nbt.NbtMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.objects.Object2IntMap;
-import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 
 import java.util.List;
 
 public class StateBlockPalette implements BlockPalette {
 
     private final Int2ObjectMap<NbtMap> runtime2StateMap = new Int2ObjectOpenHashMap<>();
-    private final Object2IntMap<NbtMap> state2RuntimeMap = new Object2IntOpenHashMap<>();
+    private final BlockStateIndex stateIndex;
 
     public StateBlockPalette(List<NbtMap> mapping) {
-        this.state2RuntimeMap.defaultReturnValue(-1);
+        this.stateIndex = new BlockStateIndex(mapping);
         for (int i = 0; i < mapping.size(); i++) {
             this.registerState(mapping.get(i), i);
         }
@@ -39,15 +37,12 @@ public class StateBlockPalette implements BlockPalette {
     private void registerState(NbtMap state, int runtimeId) {
         Preconditions.checkArgument(!this.runtime2StateMap.containsKey(runtimeId),
                 "Mapping for runtimeId " + runtimeId + " is already created!");
-        Preconditions.checkArgument(!this.state2RuntimeMap.containsKey(state),
-                "Mapping for state is already created: " + state);
         this.runtime2StateMap.put(runtimeId, state);
-        this.state2RuntimeMap.put(state, runtimeId);
     }
 
     @Override
     public int state2RuntimeId(NbtMap state) {
-        return this.state2RuntimeMap.getInt(state);
+        return this.stateIndex.indexOf(state);
     }
 
     @Override
@@ -16,13 +16,33 @@
 package dev.waterdog.chunky.common.serializer;
 
 import com.nukkitx.network.VarInts;
+import dev.waterdog.chunky.common.data.chunk.ChunkyBlockStorage;
 import dev.waterdog.chunky.common.data.chunk.PaletteHolder;
 import io.netty.buffer.ByteBuf;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.nio.ByteOrder;
 
 public class PaletteStorageSerializer {
 
+    public static ChunkyBlockStorage deserializeStorage(ByteBuf buffer, boolean zeroCopy) {
+        int paletteHeader = buffer.getUnsignedByte(buffer.readerIndex());
+        if (paletteHeader == 1) {
+            // Runtime storage with 0 bits per block contains only single block
+            buffer.skipBytes(1);
+            return ChunkyBlockStorage.uniform(VarInts.readInt(buffer));
+        }
+
+        ChunkyBlockStorage storage = new ChunkyBlockStorage();
+        storage.setLegacy(false);
+        deserializePalette(buffer, storage, zeroCopy);
+        return storage;
+    }
+
     public static void deserializePalette(ByteBuf buffer, PaletteHolder storage) {
+        deserializePalette(buffer, storage, false);
+    }
+
+    public static void deserializePalette(ByteBuf buffer, PaletteHolder storage, boolean zeroCopy) {
         storage.setPaletteHeader(buffer.readUnsignedByte());
         if (storage.isPersistent()) {
             throw new IllegalStateException("SubChunk version 8 does not support persistent storages over network!");
@@ -33,17 +53,58 @@ public class PaletteStorageSerializer {
             // storage is 16 * 16 * 16 large
             int blocksPerWord = Integer.SIZE / storage.getBitsPerBlock();
             int wordsCount = (4096 + blocksPerWord - 1) / blocksPerWord;
-            int[] words = new int[wordsCount];
-            for (int i = 0; i < wordsCount; i++) {
-                words[i] = buffer.readIntLE();
+            if (zeroCopy) {
+                storage.setWordsBuffer(buffer.readRetainedSlice(wordsCount * Integer.BYTES));
+            } else {
+                storage.setWords(readWords(buffer, wordsCount));
             }
-            storage.setWords(words);
             paletteSize = VarInts.readInt(buffer);
         }
 
-        storage.setPalette(new IntArrayList());
+        if (paletteSize == 1) {
+            storage.setPalette(PaletteHolder.singletonPalette(VarInts.readInt(buffer)));
+            return;
+        }
+
+        if (paletteSize < 1 || paletteSize > PaletteHolder.MAX_PALETTE_SIZE) {
+            throw new IllegalStateException("Invalid palette size " + paletteSize);
+        }
+
+        int[] palette = new int[paletteSize];
         for (int i = 0; i < paletteSize; i++) {
-            storage.getPalette().add(VarInts.readInt(buffer));
+            palette[i] = VarInts.readInt(buffer);
         }
+        storage.setPalette(palette);
+    }
+
+    public static void skipPalette(ByteBuf buffer) {
+        int paletteHeader = buffer.readUnsignedByte();
+        if ((paletteHeader & 0x01) == 0) {
+            throw new IllegalStateException("SubChunk version 8 does not support persistent storages over network!");
+        }
+
+        int paletteSize = 1;
+        int bitsPerBlock = paletteHeader >> 1;
+        if (bitsPerBlock != 0) {
+            int blocksPerWord = Integer.SIZE / bitsPerBlock;
+            int wordsCount = (4096 + blocksPerWord - 1) / blocksPerWord;
+            buffer.skipBytes(wordsCount * Integer.BYTES);
+            paletteSize = VarInts.readInt(buffer);
+        }
+
+        for (int i = 0; i < paletteSize; i++) {
+            VarInts.readInt(buffer);
+        }
+    }
+
+    /**
+     * Reads little endian words with single bulk copy instead of bounds checked read of every word.
+     */
+    public static int[] readWords(ByteBuf buffer, int wordsCount) {
+        int length = wordsCount * Integer.BYTES;
+        int[] words = new int[wordsCount];
+        buffer.nioBuffer(buffer.readerIndex(), length).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(words);
+        buffer.skipBytes(length);
+        return words;
     }
 }
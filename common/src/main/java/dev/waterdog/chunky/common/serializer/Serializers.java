@@ -17,6 +17,8 @@ package dev.waterdog.chunky.common.serializer;
 
 import dev.waterdog.chunky.common.data.chunk.ChunkHolder;
 import dev.waterdog.chunky.common.data.chunk.ChunkyBlockStorage;
+import dev.waterdog.chunky.common.data.chunk.LazySubChunkHolder;
+import dev.waterdog.chunky.common.data.chunk.SubChunkHolder;
 import dev.waterdog.chunky.common.network.MinecraftVersion;
 import dev.waterdog.chunky.common.palette.BlockPalette;
 import dev.waterdog.chunky.common.serializer.chunk.ChunkSerializer338;
@@ -76,4 +78,21 @@ public class Serializers {
     public static ChunkyBlockStorage[] deserializeSubChunk(ByteBuf buffer, ChunkHolder chunkHolder, BlockPalette blockPalette, int version) {
         return getSubChunkSerializer(version).deserialize(buffer, chunkHolder, blockPalette);
     }
+
+    /**
+     * Reads versioned sub chunk. If chunk holder is lazy and the version can be skipped cheaply,
+     * only slice of its payload is kept.
+     */
+    public static SubChunkHolder deserializeSubChunkHolder(ByteBuf buffer, int y, ChunkHolder chunkHolder, BlockPalette blockPalette) {
+        int version = buffer.readUnsignedByte();
+        SubChunkSerializer serializer = getSubChunkSerializer(version);
+        if (!chunkHolder.isLazy() || !serializer.canSkip()) {
+            return new SubChunkHolder(y, serializer.deserialize(buffer, chunkHolder, blockPalette));
+        }
+
+        int startIndex = buffer.readerIndex();
+        serializer.skip(buffer, chunkHolder, blockPalette);
+        ByteBuf payload = buffer.retainedSlice(startIndex, buffer.readerIndex() - startIndex);
+        return new LazySubChunkHolder(y, payload, version, chunkHolder, blockPalette);
+    }
 }
@@ -23,4 +23,18 @@ import io.netty.buffer.ByteBuf;
 public interface SubChunkSerializer {
 
     ChunkyBlockStorage[] deserialize(ByteBuf buffer, ChunkHolder chunkHolder, BlockPalette blockPalette);
+
+    /**
+     * @return true if sub chunk data can be skipped without deserializing it
+     */
+    default boolean canSkip() {
+        return false;
+    }
+
+    /**
+     * Moves reader index behind sub chunk data. Supported only if {@link #canSkip()} returns true.
+     */
+    default void skip(ByteBuf buffer, ChunkHolder chunkHolder, BlockPalette blockPalette) {
+        throw new UnsupportedOperationException(this.getClass().getSimpleName() + " can not skip sub chunks");
+    }
 }
@@ -16,7 +16,6 @@
 package dev.waterdog.chunky.common.serializer.chunk;
 
 import dev.waterdog.chunky.common.data.chunk.ChunkHolder;
-import dev.waterdog.chunky.common.data.chunk.ChunkyBlockStorage;
 import dev.waterdog.chunky.common.data.chunk.SubChunkHolder;
 import dev.waterdog.chunky.common.palette.BlockPalette;
 import dev.waterdog.chunky.common.serializer.ChunkSerializer;
@@ -32,9 +31,7 @@ public class ChunkSerializer338 implements ChunkSerializer {
     public void deserialize(ByteBuf buffer, ChunkHolder chunkHolder, BlockPalette blockPalette) {
         SubChunkHolder[] subChunks = new SubChunkHolder[chunkHolder.getSubChunksLength()];
         for (int y = MIN_SUBCHUNK_INDEX, i = 0; y < MAX_SUBCHUNK_INDEX && i < chunkHolder.getSubChunksLength() ;y++, i++) {
-            int subChunkVersion = buffer.readUnsignedByte();
-            ChunkyBlockStorage[] storages = Serializers.deserializeSubChunk(buffer, chunkHolder, blockPalette, subChunkVersion);
-            subChunks[y] = new SubChunkHolder(y, storages);
+            subChunks[y] = Serializers.deserializeSubChunkHolder(buffer, y, chunkHolder, blockPalette);
         }
         chunkHolder.setSubChunks(subChunks);
 
@@ -48,9 +45,9 @@ public class ChunkSerializer338 implements ChunkSerializer {
         short borderBlocksSize = buffer.readUnsignedByte();
         buffer.skipBytes(borderBlocksSize); // 1 byte per borderBlock
 
-        byte[] blockEntities = new byte[buffer.readableBytes()];
-        buffer.readBytes(blockEntities);
-        chunkHolder.setBlockEntities(blockEntities);
+        if (buffer.isReadable()) {
+            chunkHolder.addBlockEntities(buffer);
+        }
     }
 
     @Override
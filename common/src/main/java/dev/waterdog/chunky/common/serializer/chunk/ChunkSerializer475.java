@@ -34,7 +34,8 @@ public class ChunkSerializer475 extends ChunkSerializer338 {
             }
 
             if (palette == null) {
-                palette = biomes[i - 1].copy();
+                // Same as previous, the holder is shared instead of copied
+                palette = biomes[i - 1].share();
             }
             biomes[i] = palette;
         }
@@ -20,11 +20,12 @@ import com.nukkitx.nbt.NbtMap;
 import com.nukkitx.nbt.NbtUtils;
 import dev.waterdog.chunky.common.data.chunk.ChunkyBlockStorage;
 import dev.waterdog.chunky.common.data.chunk.ChunkHolder;
+import dev.waterdog.chunky.common.data.chunk.PaletteHolder;
 import dev.waterdog.chunky.common.palette.BlockPalette;
+import dev.waterdog.chunky.common.serializer.PaletteStorageSerializer;
 import dev.waterdog.chunky.common.serializer.SubChunkSerializer;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 import java.io.IOException;
 
@@ -43,23 +44,27 @@ public class SubChunkSerializerV1 implements SubChunkSerializer {
             throw new IllegalStateException("SubChunk version 1 does not support runtime storages over network!");
         }
 
-        int[] words = new int[wordsCount];
-        for (int i = 0; i < wordsCount; i++) {
-            words[i] = buffer.readIntLE();
+        if (chunkHolder.isZeroCopy()) {
+            storage.setWordsBuffer(buffer.readRetainedSlice(wordsCount * Integer.BYTES));
+        } else {
+            storage.setWords(PaletteStorageSerializer.readWords(buffer, wordsCount));
         }
-        storage.setWords(words);
 
         int paletteSize = buffer.readIntLE();
-        storage.setPalette(new IntArrayList());
+        if (paletteSize < 1 || paletteSize > PaletteHolder.MAX_PALETTE_SIZE) {
+            throw new IllegalStateException("Invalid palette size " + paletteSize);
+        }
+
+        int[] palette = new int[paletteSize];
         try (ByteBufInputStream stream = new ByteBufInputStream(buffer);
              NBTInputStream nbtInputStream = NbtUtils.createReaderLE(stream)) {
             for (int i = 0; i < paletteSize; i++) {
-                int runtimeId = blockPalette.state2RuntimeId((NbtMap) nbtInputStream.readTag());
-                storage.getPalette().add(runtimeId);
+                palette[i] = blockPalette.state2RuntimeId((NbtMap) nbtInputStream.readTag());
             }
         } catch (IOException e) {
             throw new RuntimeException("Cannot read persistent block palette", e);
         }
+        storage.setPalette(paletteSize == 1 ? PaletteHolder.singletonPalette(palette[0]) : palette);
 
         ChunkyBlockStorage[] storages = new ChunkyBlockStorage[2];
         storages[0] = storage;
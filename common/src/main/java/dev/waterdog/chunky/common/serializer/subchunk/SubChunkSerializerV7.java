@@ -20,6 +20,7 @@ import dev.waterdog.chunky.common.data.chunk.ChunkyBlockStorage;
 import dev.waterdog.chunky.common.palette.BlockPalette;
 import dev.waterdog.chunky.common.palette.BlockPaletteLegacy;
 import dev.waterdog.chunky.common.serializer.SubChunkSerializer;
+import dev.waterdog.chunky.common.util.ByteArrayPool;
 import io.netty.buffer.ByteBuf;
 
 public class SubChunkSerializerV7 implements SubChunkSerializer {
@@ -31,18 +32,35 @@ public class SubChunkSerializerV7 implements SubChunkSerializer {
             throw new IllegalArgumentException("Cannot deserialize legacy chunk storage with runtime palette: " + blockPalette.getClass().getSimpleName());
         }
 
-        byte[] blockIds = new byte[4096];
-        buffer.readBytes(blockIds);
+        ChunkyBlockStorage storage = new ChunkyBlockStorage();
+        storage.setLegacy(true);
+        if (chunkHolder.isZeroCopy()) {
+            // Block ids are followed by block data
+            storage.setLegacyBuffer(buffer.readRetainedSlice(4096 + 2048));
+        } else {
+            // Arrays are fully overwritten, so pooled ones can be used
+            byte[] blockIds = ByteArrayPool.BLOCK_IDS.allocate();
+            buffer.readBytes(blockIds);
+
+            byte[] blockData = ByteArrayPool.BLOCK_DATA.allocate();
+            buffer.readBytes(blockData);
 
-        byte[] blockData = new byte[2048];
-        buffer.readBytes(blockData);
+            storage.setBlockIds(blockIds);
+            storage.setBlockData(blockData);
+        }
 
         ChunkyBlockStorage[] storages = new ChunkyBlockStorage[2];
-        ChunkyBlockStorage storage = new ChunkyBlockStorage();
-        storage.setLegacy(true);
-        storage.setBlockIds(blockIds);
-        storage.setBlockData(blockData);
         storages[0] = storage;
         return storages;
     }
+
+    @Override
+    public boolean canSkip() {
+        return true;
+    }
+
+    @Override
+    public void skip(ByteBuf buffer, ChunkHolder chunkHolder, BlockPalette blockPalette) {
+        buffer.skipBytes(4096 + 2048); // blockIds, blockData
+    }
 }
@@ -38,14 +38,28 @@ public class SubChunkSerializerV8 implements SubChunkSerializer {
         return this.deserialize(buffer, storagesCount, chunkHolder, blockPalette);
     }
 
+    @Override
+    public boolean canSkip() {
+        return true;
+    }
+
+    @Override
+    public void skip(ByteBuf buffer, ChunkHolder chunkHolder, BlockPalette blockPalette) {
+        int storagesCount = buffer.readUnsignedByte();
+        this.skip(buffer, storagesCount);
+    }
+
+    protected void skip(ByteBuf buffer, int storagesCount) {
+        for (int y = 0; y < storagesCount; y++) {
+            PaletteStorageSerializer.skipPalette(buffer);
+        }
+    }
+
     protected ChunkyBlockStorage[] deserialize(ByteBuf buffer, int storagesCount, ChunkHolder chunkHolder, BlockPalette blockPalette) {
         ChunkyBlockStorage[] storages = new ChunkyBlockStorage[storagesCount];
 
         for (int y = 0; y < storagesCount; y++) {
-            ChunkyBlockStorage storage = new ChunkyBlockStorage();
-            storage.setLegacy(false);
-            PaletteStorageSerializer.deserializePalette(buffer, storage);
-            storages[y] = storage;
+            storages[y] = PaletteStorageSerializer.deserializeStorage(buffer, chunkHolder.isZeroCopy());
         }
         return storages;
     }
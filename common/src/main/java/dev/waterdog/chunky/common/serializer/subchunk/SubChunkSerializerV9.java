@@ -29,4 +29,11 @@ public class SubChunkSerializerV9 extends SubChunkSerializerV8 {
         buffer.readUnsignedByte(); // sectionY
         return this.deserialize(buffer, storagesCount, chunkHolder, blockPalette);
     }
+
+    @Override
+    public void skip(ByteBuf buffer, ChunkHolder chunkHolder, BlockPalette blockPalette) {
+        int storagesCount = buffer.readUnsignedByte();
+        buffer.readUnsignedByte(); // sectionY
+        this.skip(buffer, storagesCount);
+    }
 }
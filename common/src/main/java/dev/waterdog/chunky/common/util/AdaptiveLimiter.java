@@ -0,0 +1,63 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.util;
+
+/**
+ * Additive-increase/multiplicative-decrease concurrency limit.
+ * Limit grows by one after a full window of fast samples and is reduced once samples get slower than threshold.
+ */
+public class AdaptiveLimiter {
+
+    private static final double BACKOFF_RATIO = 0.75;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThreshold;
+
+    private volatile double limit;
+
+    public AdaptiveLimiter(int minLimit, int maxLimit, long latencyThreshold) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.latencyThreshold = latencyThreshold;
+        this.limit = this.minLimit;
+    }
+
+    /**
+     * @return true if limit was changed
+     */
+    public synchronized boolean onSample(long latency) {
+        int oldLimit = this.getLimit();
+        if (latency > this.latencyThreshold) {
+            this.limit = Math.max(this.minLimit, this.limit * BACKOFF_RATIO);
+        } else {
+            this.limit = Math.min(this.maxLimit, this.limit + 1.0 / this.limit);
+        }
+        return oldLimit != this.getLimit();
+    }
+
+    public synchronized void onTimeout() {
+        this.limit = this.minLimit;
+    }
+
+    public int getLimit() {
+        return (int) this.limit;
+    }
+
+    public int getMaxLimit() {
+        return this.maxLimit;
+    }
+}
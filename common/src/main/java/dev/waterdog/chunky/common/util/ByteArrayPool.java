@@ -0,0 +1,57 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Bounded pool of equally sized byte arrays. Allocated arrays are not cleared,
+ * so they should be used only where all bytes are overwritten.
+ */
+public class ByteArrayPool {
+    // Legacy block ids and block data of single sub chunk
+    public static final ByteArrayPool BLOCK_IDS = new ByteArrayPool(4096, 512);
+    public static final ByteArrayPool BLOCK_DATA = new ByteArrayPool(2048, 512);
+
+    private final int arraySize;
+    private final int maxPooled;
+    private final Deque<byte[]> arrays = new ArrayDeque<>();
+
+    public ByteArrayPool(int arraySize, int maxPooled) {
+        this.arraySize = arraySize;
+        this.maxPooled = maxPooled;
+    }
+
+    public synchronized byte[] allocate() {
+        byte[] array = this.arrays.pollFirst();
+        return array == null ? new byte[this.arraySize] : array;
+    }
+
+    public synchronized void release(byte[] array) {
+        if (array != null && array.length == this.arraySize && this.arrays.size() < this.maxPooled) {
+            this.arrays.addFirst(array);
+        }
+    }
+
+    public synchronized int size() {
+        return this.arrays.size();
+    }
+
+    public int getArraySize() {
+        return this.arraySize;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.util;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import java.util.List;
+import java.util.function.LongFunction;
+
+/**
+ * Primitive long keyed map split to independently locked stripes.
+ * Threads working with different keys rarely contend on same lock.
+ */
+public class ConcurrentLong2ObjectMap<V> {
+
+    private static final int STRIPE_BITS = 5;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+
+    private final Long2ObjectOpenHashMap<V>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentLong2ObjectMap() {
+        this.stripes = new Long2ObjectOpenHashMap[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            this.stripes[i] = new Long2ObjectOpenHashMap<>();
+        }
+    }
+
+    private Long2ObjectOpenHashMap<V> stripe(long key) {
+        // Use high bits, low bits are used by the stripe map itself
+        return this.stripes[(int) (HashCommon.mix(key) >>> (Long.SIZE - STRIPE_BITS))];
+    }
+
+    public V get(long key) {
+        Long2ObjectOpenHashMap<V> stripe = this.stripe(key);
+        synchronized (stripe) {
+            return stripe.get(key);
+        }
+    }
+
+    public V put(long key, V value) {
+        Long2ObjectOpenHashMap<V> stripe = this.stripe(key);
+        synchronized (stripe) {
+            return stripe.put(key, value);
+        }
+    }
+
+    /**
+     * @return current value or null if given value was inserted
+     */
+    public V putIfAbsent(long key, V value) {
+        Long2ObjectOpenHashMap<V> stripe = this.stripe(key);
+        synchronized (stripe) {
+            V current = stripe.get(key);
+            if (current == null) {
+                stripe.put(key, value);
+            }
+            return current;
+        }
+    }
+
+    public V computeIfAbsent(long key, LongFunction<V> function) {
+        Long2ObjectOpenHashMap<V> stripe = this.stripe(key);
+        synchronized (stripe) {
+            V value = stripe.get(key);
+            if (value == null) {
+                value = function.apply(key);
+                if (value != null) {
+                    stripe.put(key, value);
+                }
+            }
+            return value;
+        }
+    }
+
+    public V remove(long key) {
+        Long2ObjectOpenHashMap<V> stripe = this.stripe(key);
+        synchronized (stripe) {
+            return stripe.remove(key);
+        }
+    }
+
+    public boolean remove(long key, V value) {
+        Long2ObjectOpenHashMap<V> stripe = this.stripe(key);
+        synchronized (stripe) {
+            return stripe.remove(key, value);
+        }
+    }
+
+    public boolean containsKey(long key) {
+        Long2ObjectOpenHashMap<V> stripe = this.stripe(key);
+        synchronized (stripe) {
+            return stripe.containsKey(key);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Long2ObjectOpenHashMap<V> stripe : this.stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    /**
+     * @return snapshot of all values
+     */
+    public List<V> values() {
+        List<V> values = new ObjectArrayList<>();
+        for (Long2ObjectOpenHashMap<V> stripe : this.stripes) {
+            synchronized (stripe) {
+                values.addAll(stripe.values());
+            }
+        }
+        return values;
+    }
+}
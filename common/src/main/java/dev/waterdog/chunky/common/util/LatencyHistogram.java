@@ -0,0 +1,97 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in milliseconds.
+ * Bucket n holds values in range [2^(n-1), 2^n), bucket 0 holds values lower than 1ms.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 18; // last bucket holds everything above ~65 seconds
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long millis) {
+        if (millis < 0) {
+            millis = 0;
+        }
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+        this.buckets.incrementAndGet(bucket);
+        this.count.incrementAndGet();
+        this.sum.addAndGet(millis);
+
+        long currentMax;
+        while ((currentMax = this.max.get()) < millis && !this.max.compareAndSet(currentMax, millis)) {
+            // retry
+        }
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    public long getMax() {
+        return this.max.get();
+    }
+
+    public double getMean() {
+        long count = this.count.get();
+        return count == 0 ? 0 : (double) this.sum.get() / count;
+    }
+
+    /**
+     * @param percentile value between 0 and 1
+     * @return upper bound of the bucket the percentile falls into
+     */
+    public long getPercentile(double percentile) {
+        long count = this.count.get();
+        if (count == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(count * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.buckets.get(i);
+            if (seen >= target) {
+                return i == BUCKETS - 1 ? this.max.get() : (1L << i);
+            }
+        }
+        return this.max.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets.set(i, 0);
+        }
+        this.count.set(0);
+        this.sum.set(0);
+        this.max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.1fms p50<=%dms p90<=%dms p99<=%dms max=%dms", this.getCount(), this.getMean(),
+                this.getPercentile(0.5), this.getPercentile(0.9), this.getPercentile(0.99), this.getMax());
+    }
+}
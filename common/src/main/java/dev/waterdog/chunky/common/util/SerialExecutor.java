@@ -0,0 +1,64 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks one at a time in submission order on the underlying executor.
+ * Tasks never run concurrently and each task sees effects of the previous ones.
+ */
+public class SerialExecutor implements Executor {
+
+    private static final Logger log = LogManager.getLogger("Chunky");
+
+    private final Executor executor;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger wip = new AtomicInteger();
+
+    public SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        this.tasks.offer(task);
+        if (this.wip.getAndIncrement() == 0) {
+            this.executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        int missed = 1;
+        do {
+            Runnable task;
+            while ((task = this.tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    log.error("Serial task failed", e);
+                }
+            }
+            missed = this.wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+}
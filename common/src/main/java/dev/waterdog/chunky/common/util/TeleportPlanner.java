@@ -0,0 +1,161 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.util;
+
+import it.unimi.dsi.fastutil.longs.AbstractLongIterator;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import lombok.Data;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.LongConsumer;
+
+import static dev.waterdog.chunky.common.util.ChunkUtils.*;
+
+/**
+ * Splits rectangular area of chunks to square tiles, where each tile can be received with single teleport
+ * to its center. Tiles are ordered along Hilbert curve, so consecutive tiles are next to each other.
+ */
+public class TeleportPlanner {
+
+    public static List<Tile> plan(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ, int radius) {
+        if (minChunkX > maxChunkX || minChunkZ > maxChunkZ) {
+            throw new IllegalArgumentException("Invalid area min=" + minChunkX + "," + minChunkZ + " max=" + maxChunkX + "," + maxChunkZ);
+        }
+
+        int tileSize = coveredSquareSize(radius);
+        int tilesX = (maxChunkX - minChunkX) / tileSize + 1;
+        int tilesZ = (maxChunkZ - minChunkZ) / tileSize + 1;
+        int order = 32 - Integer.numberOfLeadingZeros(Math.max(tilesX, tilesZ) - 1);
+
+        List<Tile> tiles = new ObjectArrayList<>(tilesX * tilesZ);
+        for (int tileX = 0; tileX < tilesX; tileX++) {
+            for (int tileZ = 0; tileZ < tilesZ; tileZ++) {
+                int tileMinX = minChunkX + tileX * tileSize;
+                int tileMinZ = minChunkZ + tileZ * tileSize;
+                int tileMaxX = Math.min(maxChunkX, tileMinX + tileSize - 1);
+                int tileMaxZ = Math.min(maxChunkZ, tileMinZ + tileSize - 1);
+                long curveIndex = hilbertIndex(order, tileX, tileZ);
+                tiles.add(new Tile(tileMinX, tileMinZ, tileMaxX, tileMaxZ, curveIndex));
+            }
+        }
+        tiles.sort(Comparator.comparingLong(Tile::getCurveIndex));
+        return tiles;
+    }
+
+    /**
+     * Iterates chunks of all tiles in order of the plan. Chunks of a tile are collected only once iteration reaches it,
+     * so at most one tile is kept in memory.
+     */
+    public static LongIterator chunkIterator(List<Tile> tiles) {
+        Iterator<Tile> tileIterator = tiles.iterator();
+        return new AbstractLongIterator() {
+            private final LongArrayList tileChunks = new LongArrayList();
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                while (this.position >= this.tileChunks.size()) {
+                    if (!tileIterator.hasNext()) {
+                        return false;
+                    }
+                    this.tileChunks.clear();
+                    this.position = 0;
+                    tileIterator.next().forEachChunk(this.tileChunks::add);
+                }
+                return true;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return this.tileChunks.getLong(this.position++);
+            }
+        };
+    }
+
+    /**
+     * Calculates size of the largest square around position, that is fully covered by chunks in given radius.
+     * @see ChunkUtils#checkChunksInRadius(int, int, int, LongConsumer)
+     */
+    public static int coveredSquareSize(int radius) {
+        return ((int) (radius / Math.sqrt(2)) + 1) * 2;
+    }
+
+    public static long hilbertIndex(int order, int x, int y) {
+        int n = 1 << order;
+        long index = 0;
+        for (int s = n >> 1; s > 0; s >>= 1) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            index += (long) s * s * ((3 * rx) ^ ry);
+            // Rotate quadrant
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                int temp = x;
+                x = y;
+                y = temp;
+            }
+        }
+        return index;
+    }
+
+    @Data
+    public static class Tile {
+        private final int minChunkX;
+        private final int minChunkZ;
+        private final int maxChunkX;
+        private final int maxChunkZ;
+        private final long curveIndex;
+
+        public int getCenterX() {
+            return this.minChunkX + (this.maxChunkX - this.minChunkX + 1) / 2;
+        }
+
+        public int getCenterZ() {
+            return this.minChunkZ + (this.maxChunkZ - this.minChunkZ + 1) / 2;
+        }
+
+        public long getCenterIndex() {
+            return chunkIndex(this.getCenterX(), this.getCenterZ());
+        }
+
+        /**
+         * Iterates all chunks in tile, starting with the center chunk.
+         */
+        public void forEachChunk(LongConsumer consumer) {
+            long centerIndex = this.getCenterIndex();
+            consumer.accept(centerIndex);
+            for (int x = this.minChunkX; x <= this.maxChunkX; x++) {
+                for (int z = this.minChunkZ; z <= this.maxChunkZ; z++) {
+                    long index = chunkIndex(x, z);
+                    if (index != centerIndex) {
+                        consumer.accept(index);
+                    }
+                }
+            }
+        }
+    }
+}
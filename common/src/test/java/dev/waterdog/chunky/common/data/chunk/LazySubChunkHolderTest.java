@@ -0,0 +1,42 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.data.chunk;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LazySubChunkHolderTest {
+
+    @Test
+    public void equalsAndHashCodeDoNotDecode() {
+        ChunkHolder chunkHolder = new ChunkHolder(0, 0, 1, null);
+        ByteBuf payload = Unpooled.wrappedBuffer(new byte[]{8, 0});
+        LazySubChunkHolder subChunk = new LazySubChunkHolder(0, payload, 8, chunkHolder, null);
+        chunkHolder.setSubChunks(new SubChunkHolder[]{subChunk});
+
+        chunkHolder.hashCode();
+        assertEquals(subChunk, subChunk);
+        assertNotEquals(SubChunkHolder.emptyHolder(0), subChunk);
+        assertNotEquals(subChunk, SubChunkHolder.emptyHolder(0));
+        assertFalse(subChunk.isDecoded());
+
+        subChunk.recycle();
+        assertEquals(0, payload.refCnt());
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.data.chunk;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PaletteHolderTest {
+
+    @Test
+    public void sharedHolderIsReadOnly() {
+        ByteBuf wordsBuffer = Unpooled.buffer(Integer.BYTES).writeIntLE(7);
+        PaletteHolder holder = new PaletteHolder();
+        holder.setPaletteHeader(3);
+        holder.setPalette(new int[]{1, 2});
+        holder.setWordsBuffer(wordsBuffer);
+        holder.share();
+        assertEquals(0, wordsBuffer.refCnt());
+
+        try {
+            holder.setWords(new int[]{0});
+            fail("Shared holder was modified");
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            holder.setPalette(new int[]{3});
+            fail("Shared holder was modified");
+        } catch (UnsupportedOperationException expected) {
+        }
+        assertArrayEquals(new int[]{7}, holder.getWords());
+
+        PaletteHolder copy = holder.copy();
+        copy.setWords(new int[]{0});
+        assertArrayEquals(new int[]{7}, holder.getWords());
+        assertArrayEquals(new int[]{0}, copy.getWords());
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.network;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import org.junit.Test;
+
+import static dev.waterdog.chunky.common.util.ChunkUtils.chunkIndex;
+import static org.junit.Assert.*;
+
+public class ChunkRequestQueueTest {
+
+    // Queue only passes its peer to the region index, so no peer is needed
+    private final ChunkRequestQueue queue = new ChunkRequestQueue(null, new PeerRegionIndex());
+
+    @Test
+    public void keepsInsertionOrderWithoutDuplicates() {
+        assertTrue(this.queue.add(chunkIndex(1, 1)));
+        assertTrue(this.queue.add(chunkIndex(2, 2)));
+        assertFalse(this.queue.add(chunkIndex(1, 1)));
+
+        assertEquals(2, this.queue.size());
+        assertEquals(chunkIndex(1, 1), this.queue.peekFirst());
+        assertTrue(this.queue.remove(chunkIndex(1, 1)));
+        assertFalse(this.queue.remove(chunkIndex(1, 1)));
+        assertEquals(chunkIndex(2, 2), this.queue.peekFirst());
+    }
+
+    @Test
+    public void removeAllKeepsOrderOfRemaining() {
+        for (int x = 0; x < 5; x++) {
+            this.queue.add(chunkIndex(x, 0));
+        }
+        this.queue.removeAll(LongArrayList.wrap(new long[]{chunkIndex(0, 0), chunkIndex(2, 0)}));
+
+        assertEquals(3, this.queue.size());
+        assertFalse(this.queue.contains(chunkIndex(2, 0)));
+        assertEquals(chunkIndex(1, 0), this.queue.peekFirst());
+    }
+
+    @Test
+    public void removeNearestTakesClosestIndexes() {
+        this.queue.add(chunkIndex(100, 100));
+        this.queue.add(chunkIndex(1, 0));
+        this.queue.add(chunkIndex(50, 50));
+        this.queue.add(chunkIndex(0, 2));
+
+        LongList removed = LongArrayList.wrap(this.queue.removeNearest(0, 0, 2));
+        assertEquals(2, removed.size());
+        assertTrue(removed.contains(chunkIndex(1, 0)));
+        assertTrue(removed.contains(chunkIndex(0, 2)));
+        assertEquals(2, this.queue.size());
+        assertFalse(this.queue.contains(chunkIndex(1, 0)));
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.network;
+
+import dev.waterdog.chunky.common.ChunkSink;
+import dev.waterdog.chunky.common.data.ChunkRequest;
+import dev.waterdog.chunky.common.data.chunk.ChunkHolder;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static dev.waterdog.chunky.common.util.ChunkUtils.chunkIndex;
+import static org.junit.Assert.*;
+
+public class ChunkStreamTest {
+
+    private static final int CHUNKS = 10;
+    private static final int MAX_IN_FLIGHT = 3;
+
+    private ChunkyClient client;
+    private ChunkyPeer peer;
+    private ExecutorService sinkExecutor;
+
+    @Before
+    public void setUp() {
+        MinecraftVersion version = MinecraftVersion.MINECRAFT_PE_1_18_30;
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", 19132);
+        this.client = ChunkyClient.builder()
+                .peerCount(1)
+                .minecraftVersion(version)
+                .targetAddress(address)
+                .build();
+        // Peer is never started, it only accepts requests which test completes manually
+        this.peer = new ChunkyPeer(this.client, version, address, this.client.getEventLoopGroup().next());
+        this.client.getPeers().add(this.peer);
+        this.sinkExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        this.sinkExecutor.shutdownNow();
+        this.client.getEventLoopGroup().shutdownGracefully();
+    }
+
+    private List<ChunkRequest> awaitPendingRequests() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        List<ChunkRequest> requests;
+        while ((requests = this.client.getPendingChunkRequests().values()).isEmpty()) {
+            assertTrue("No request was started", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+        return requests;
+    }
+
+    @Test
+    public void deliversChunksOnSinkExecutorWithinInFlightLimit() throws Exception {
+        LongArrayList indexes = new LongArrayList();
+        for (int x = 0; x < CHUNKS; x++) {
+            indexes.add(chunkIndex(x, 0));
+        }
+
+        BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+        Thread testThread = Thread.currentThread();
+        AtomicBoolean calledOnTestThread = new AtomicBoolean();
+        this.client.requestChunks(indexes.iterator(), new ChunkSink() {
+            @Override
+            public void onSubscribe(ChunkStream stream) {
+                stream.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onChunk(ChunkHolder chunkHolder) {
+                // Test thread completes the requests, but sink must not run on it
+                if (Thread.currentThread() == testThread) {
+                    calledOnTestThread.set(true);
+                }
+                events.add(chunkHolder);
+            }
+
+            @Override
+            public void onComplete() {
+                events.add("complete");
+            }
+        }, MAX_IN_FLIGHT, this.sinkExecutor);
+
+        LongArrayList received = new LongArrayList();
+        while (received.size() < CHUNKS) {
+            List<ChunkRequest> requests = this.awaitPendingRequests();
+            assertTrue(requests.size() <= MAX_IN_FLIGHT);
+
+            ChunkRequest request = requests.get(0);
+            this.client.onChunkDeserializedCallback(new ChunkHolder(request.getChunkX(), request.getChunkZ(), 0, null), this.peer);
+            ChunkHolder chunkHolder = (ChunkHolder) events.poll(5, TimeUnit.SECONDS);
+            assertNotNull(chunkHolder);
+            received.add(chunkIndex(chunkHolder.getChunkX(), chunkHolder.getChunkZ()));
+        }
+
+        assertEquals("complete", events.poll(5, TimeUnit.SECONDS));
+        assertFalse(calledOnTestThread.get());
+        received.sort(null);
+        assertEquals(indexes, received);
+    }
+
+    @Test
+    public void slowSinkLimitsRequests() throws Exception {
+        LongArrayList indexes = new LongArrayList();
+        for (int x = 0; x < CHUNKS; x++) {
+            indexes.add(chunkIndex(x, 0));
+        }
+
+        CountDownLatch sinkReleased = new CountDownLatch(1);
+        ChunkStream stream = this.client.requestChunks(indexes.iterator(), new ChunkSink() {
+            @Override
+            public void onSubscribe(ChunkStream stream) {
+                stream.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onChunk(ChunkHolder chunkHolder) {
+                try {
+                    sinkReleased.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, MAX_IN_FLIGHT, this.sinkExecutor);
+
+        this.awaitPendingRequests();
+        while (stream.getInFlight() < MAX_IN_FLIGHT) {
+            Thread.sleep(5);
+        }
+        for (ChunkRequest request : this.client.getPendingChunkRequests().values()) {
+            this.client.onChunkDeserializedCallback(new ChunkHolder(request.getChunkX(), request.getChunkZ(), 0, null), this.peer);
+        }
+
+        // Completed chunks wait for the blocked sink, so no new requests are started
+        Thread.sleep(50);
+        assertEquals(MAX_IN_FLIGHT, stream.getInFlight());
+        assertTrue(this.client.getPendingChunkRequests().isEmpty());
+
+        sinkReleased.countDown();
+        this.awaitPendingRequests();
+        assertTrue(stream.getInFlight() <= MAX_IN_FLIGHT);
+    }
+}
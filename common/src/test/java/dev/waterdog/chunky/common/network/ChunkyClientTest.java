@@ -0,0 +1,120 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.network;
+
+import dev.waterdog.chunky.common.ChunkyListener;
+import dev.waterdog.chunky.common.data.ChunkRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static dev.waterdog.chunky.common.util.ChunkUtils.chunkIndex;
+import static org.junit.Assert.*;
+
+public class ChunkyClientTest {
+
+    private ChunkyClient client;
+    private ChunkyPeer peer;
+
+    @Before
+    public void setUp() {
+        MinecraftVersion version = MinecraftVersion.MINECRAFT_PE_1_18_30;
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", 19132);
+        this.client = ChunkyClient.builder()
+                .peerCount(1)
+                .minecraftVersion(version)
+                .targetAddress(address)
+                .build();
+        // Never started, only reported as the peer which failed the request
+        this.peer = new ChunkyPeer(this.client, version, address, this.client.getEventLoopGroup().next());
+    }
+
+    @After
+    public void tearDown() {
+        this.client.getEventLoopGroup().shutdownGracefully();
+    }
+
+    private ChunkRequest addPendingRequest(int chunkX, int chunkZ) {
+        ChunkRequest request = new ChunkRequest(chunkX, chunkZ);
+        request.addConsumer();
+        this.client.getPendingChunkRequests().put(chunkIndex(chunkX, chunkZ), request);
+        return request;
+    }
+
+    @Test
+    public void failedRequestIsReportedToListenerBeforeFuture() {
+        ChunkRequest request = this.addPendingRequest(3, -4);
+        Throwable error = new IllegalStateException("Test");
+        AtomicReference<Throwable> reported = new AtomicReference<>();
+        this.client.setListener(new ChunkyListener() {
+            @Override
+            public void onChunkRequestFailed(ChunkRequest failedRequest, ChunkyPeer failedPeer, Throwable failure) {
+                assertSame(request, failedRequest);
+                assertSame(peer, failedPeer);
+                assertFalse(failedRequest.getFuture().isDone());
+                reported.set(failure);
+            }
+        });
+
+        this.client.onPendingChunkFailed(chunkIndex(3, -4), this.peer, error);
+        assertSame(error, reported.get());
+        assertTrue(request.getFuture().isCompletedExceptionally());
+        assertNull(this.client.getPendingChunkRequests().get(chunkIndex(3, -4)));
+    }
+
+    @Test
+    public void decodeTaskIsFailedAfterExecutorShutdown() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1), new ChunkyClient.DecodeRejectionHandler());
+        executor.shutdown();
+
+        ChunkyClient.DecodeTask<String> task = new ChunkyClient.DecodeTask<>(() -> "chunk");
+        executor.execute(task);
+        assertTrue(task.getFuture().isCompletedExceptionally());
+    }
+
+    @Test
+    public void decodeTaskRunsOnCallerWhenQueueIsFull() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1), new ChunkyClient.DecodeRejectionHandler());
+        try {
+            executor.execute(() -> {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            executor.execute(() -> { });
+
+            Thread caller = Thread.currentThread();
+            ChunkyClient.DecodeTask<Thread> task = new ChunkyClient.DecodeTask<>(Thread::currentThread);
+            executor.execute(task);
+            assertSame(caller, task.getFuture().getNow(null));
+        } finally {
+            blocked.countDown();
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+
+import static dev.waterdog.chunky.common.util.ChunkUtils.chunkIndex;
+import static org.junit.Assert.*;
+
+public class PeerRegionIndexTest {
+
+    private final PeerRegionIndex regionIndex = new PeerRegionIndex();
+    private ChunkyClient client;
+    private ChunkyPeer peer;
+    private ChunkyPeer otherPeer;
+
+    @Before
+    public void setUp() {
+        // Peers are never started, they are used only as region owners
+        MinecraftVersion version = MinecraftVersion.MINECRAFT_PE_1_18_30;
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", 19132);
+        this.client = ChunkyClient.builder()
+                .peerCount(1)
+                .minecraftVersion(version)
+                .targetAddress(address)
+                .build();
+        this.peer = new ChunkyPeer(this.client, version, address, this.client.getEventLoopGroup().next());
+        this.otherPeer = new ChunkyPeer(this.client, version, address, this.client.getEventLoopGroup().next());
+    }
+
+    @After
+    public void tearDown() {
+        this.client.getEventLoopGroup().shutdownGracefully();
+    }
+
+    @Test
+    public void regionFollowsFirstQueuedPeerUntilItsLastRequest() {
+        this.regionIndex.onQueued(chunkIndex(0, 0), this.peer);
+        this.regionIndex.onQueued(chunkIndex(1, 0), this.peer);
+        // Other peer's requests change neither owner nor count
+        this.regionIndex.onQueued(chunkIndex(2, 0), this.otherPeer);
+        this.regionIndex.onDequeued(chunkIndex(2, 0), this.otherPeer);
+        assertEquals(1, this.regionIndex.size());
+
+        this.regionIndex.onDequeued(chunkIndex(0, 0), this.peer);
+        assertSame(this.peer, this.regionIndex.getPeer(chunkIndex(3, 3)));
+        this.regionIndex.onDequeued(chunkIndex(1, 0), this.peer);
+        assertNull(this.regionIndex.getPeer(chunkIndex(3, 3)));
+        assertEquals(0, this.regionIndex.size());
+    }
+
+    @Test
+    public void chunkNearBorderMatchesNeighbourRegion() {
+        this.regionIndex.onQueued(chunkIndex(7, 7), this.peer);
+        this.regionIndex.onQueued(chunkIndex(-20, 0), this.otherPeer);
+
+        // Just across the border in x, z and diagonally
+        assertSame(this.peer, this.regionIndex.getPeer(chunkIndex(8, 5)));
+        assertSame(this.peer, this.regionIndex.getPeer(chunkIndex(5, 9)));
+        assertSame(this.peer, this.regionIndex.getPeer(chunkIndex(9, 9)));
+        // Far side of the neighbour region
+        assertNull(this.regionIndex.getPeer(chunkIndex(13, 5)));
+        assertSame(this.otherPeer, this.regionIndex.getPeer(chunkIndex(-17, 1)));
+    }
+
+    @Test
+    public void closedPeerKeepsCountsUntilRequestsAreDequeued() {
+        this.regionIndex.onQueued(chunkIndex(0, 0), this.peer);
+        this.regionIndex.onQueued(chunkIndex(100, 100), this.peer);
+        this.peer.close("Test");
+
+        // Regions are not offered to new requests, but stay until requests are taken over
+        assertNull(this.regionIndex.getPeer(chunkIndex(0, 0)));
+        assertEquals(2, this.regionIndex.size());
+
+        this.regionIndex.onDequeued(chunkIndex(0, 0), this.peer);
+        this.regionIndex.onQueued(chunkIndex(0, 0), this.otherPeer);
+        assertSame(this.otherPeer, this.regionIndex.getPeer(chunkIndex(0, 0)));
+        this.regionIndex.onDequeued(chunkIndex(100, 100), this.peer);
+        assertEquals(1, this.regionIndex.size());
+    }
+}
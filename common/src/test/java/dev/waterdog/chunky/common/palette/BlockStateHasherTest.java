@@ -0,0 +1,62 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.palette;
+
+import com.nukkitx.nbt.NbtMap;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BlockStateHasherTest {
+
+    @Test
+    public void fingerprintDoesNotDependOnEntryOrder() {
+        NbtMap first = NbtMap.builder()
+                .putString("name", "minecraft:log")
+                .putCompound("states", NbtMap.builder().putString("old_log_type", "oak").putString("pillar_axis", "y").build())
+                .putInt("version", 17879555)
+                .build();
+        NbtMap second = NbtMap.builder()
+                .putInt("version", 17879555)
+                .putCompound("states", NbtMap.builder().putString("pillar_axis", "y").putString("old_log_type", "oak").build())
+                .putString("name", "minecraft:log")
+                .build();
+        assertEquals(BlockStateHasher.fingerprint(first), BlockStateHasher.fingerprint(second));
+    }
+
+    @Test
+    public void fingerprintDependsOnValues() {
+        NbtMap oak = NbtMap.builder().putString("name", "minecraft:log")
+                .putCompound("states", NbtMap.builder().putString("old_log_type", "oak").build()).build();
+        NbtMap birch = NbtMap.builder().putString("name", "minecraft:log")
+                .putCompound("states", NbtMap.builder().putString("old_log_type", "birch").build()).build();
+        assertNotEquals(BlockStateHasher.fingerprint(oak), BlockStateHasher.fingerprint(birch));
+    }
+
+    @Test
+    public void fingerprintDependsOnTagType() {
+        NbtMap byteValue = NbtMap.builder().putByte("open_bit", (byte) 1).build();
+        NbtMap intValue = NbtMap.builder().putInt("open_bit", 1).build();
+        assertNotEquals(BlockStateHasher.fingerprint(byteValue), BlockStateHasher.fingerprint(intValue));
+    }
+
+    @Test
+    public void swappedKeysAndValuesDiffer() {
+        NbtMap first = NbtMap.builder().putString("a", "b").putString("c", "d").build();
+        NbtMap second = NbtMap.builder().putString("a", "d").putString("c", "b").build();
+        assertNotEquals(BlockStateHasher.fingerprint(first), BlockStateHasher.fingerprint(second));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.palette;
+
+import com.nukkitx.nbt.NbtMap;
+import com.nukkitx.nbt.NbtMapBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BlockStateIndexTest {
+
+    private static NbtMap state(String name, int version, Object... properties) {
+        NbtMapBuilder states = NbtMap.builder();
+        for (int i = 0; i < properties.length; i += 2) {
+            states.put((String) properties[i], properties[i + 1]);
+        }
+        return NbtMap.builder()
+                .putString("name", name)
+                .putCompound("states", states.build())
+                .putInt("version", version)
+                .build();
+    }
+
+    @Test
+    public void findsEveryRegisteredState() {
+        List<NbtMap> states = new ArrayList<>();
+        for (String type : new String[]{"oak", "spruce", "birch", "jungle"}) {
+            for (String axis : new String[]{"x", "y", "z"}) {
+                states.add(state("minecraft:log", 1, "old_log_type", type, "pillar_axis", axis));
+            }
+        }
+        states.add(state("minecraft:air", 1));
+        states.add(state("minecraft:stone", 1, "stone_type", "granite"));
+
+        BlockStateIndex index = new BlockStateIndex(states);
+        for (int i = 0; i < states.size(); i++) {
+            // Lookup uses equal copies, same as decoded palette entries
+            NbtMap copy = NbtMap.fromMap(new HashMap<>(states.get(i)));
+            assertEquals(i, index.indexOf(copy));
+        }
+    }
+
+    @Test
+    public void unknownStatesAreMissing() {
+        BlockStateIndex index = new BlockStateIndex(Arrays.asList(
+                state("minecraft:log", 1, "old_log_type", "oak"),
+                state("minecraft:log", 1, "old_log_type", "birch")));
+
+        assertEquals(-1, index.indexOf(state("minecraft:log", 1, "old_log_type", "acacia")));
+        assertEquals(-1, index.indexOf(state("minecraft:log", 1, "stripped_bit", (byte) 1)));
+        assertEquals(-1, index.indexOf(state("minecraft:planks", 1, "old_log_type", "oak")));
+        assertEquals(-1, index.indexOf(NbtMap.builder().putString("name", "minecraft:log").build()));
+    }
+
+    @Test
+    public void hitIsConfirmedByEquals() {
+        BlockStateIndex index = new BlockStateIndex(Arrays.asList(
+                state("minecraft:log", 1, "old_log_type", "oak"),
+                state("minecraft:stone", 1)));
+
+        // Same name and properties pack to same key, but other tags must match too
+        assertEquals(-1, index.indexOf(state("minecraft:log", 2, "old_log_type", "oak")));
+        assertEquals(-1, index.indexOf(state("minecraft:log", 1, "old_log_type", (byte) 0)));
+    }
+
+    @Test
+    public void statesDifferingOnlyOutsideProperties() {
+        List<NbtMap> states = Arrays.asList(
+                state("minecraft:log", 1, "old_log_type", "oak"),
+                state("minecraft:log", 2, "old_log_type", "oak"));
+        BlockStateIndex index = new BlockStateIndex(states);
+        assertEquals(0, index.indexOf(states.get(0)));
+        assertEquals(1, index.indexOf(states.get(1)));
+    }
+
+    @Test
+    public void statesWithoutPropertiesUseFingerprint() {
+        List<NbtMap> states = Arrays.asList(
+                NbtMap.builder().putCompound("block", state("minecraft:air", 1)).putShort("id", (short) 0).build(),
+                NbtMap.builder().putCompound("block", state("minecraft:stone", 1)).putShort("id", (short) 1).build());
+        BlockStateIndex index = new BlockStateIndex(states);
+        assertEquals(0, index.indexOf(states.get(0)));
+        assertEquals(1, index.indexOf(states.get(1)));
+        assertEquals(-1, index.indexOf(state("minecraft:stone", 1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateStatesAreRejected() {
+        new BlockStateIndex(Arrays.asList(
+                state("minecraft:log", 1, "old_log_type", "oak"),
+                state("minecraft:log", 1, "old_log_type", "oak")));
+    }
+}
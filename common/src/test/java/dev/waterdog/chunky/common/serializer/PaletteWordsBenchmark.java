@@ -0,0 +1,85 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.serializer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares per-word reads with bulk read of palette words for every bits per block used by network storages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaletteWordsBenchmark {
+
+    @Param({"1", "2", "3", "4", "5", "6", "8", "16"})
+    private int bitsPerBlock;
+
+    @Param({"true", "false"})
+    private boolean direct;
+
+    private ByteBuf buffer;
+    private int wordsCount;
+
+    @Setup
+    public void setup() {
+        int blocksPerWord = Integer.SIZE / this.bitsPerBlock;
+        this.wordsCount = (4096 + blocksPerWord - 1) / blocksPerWord;
+
+        this.buffer = this.direct ? ByteBufAllocator.DEFAULT.directBuffer() : ByteBufAllocator.DEFAULT.heapBuffer();
+        for (int i = 0; i < this.wordsCount; i++) {
+            this.buffer.writeIntLE(ThreadLocalRandom.current().nextInt());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.buffer.release();
+    }
+
+    @Benchmark
+    public int[] readIntLE() {
+        this.buffer.readerIndex(0);
+        int[] words = new int[this.wordsCount];
+        for (int i = 0; i < this.wordsCount; i++) {
+            words[i] = this.buffer.readIntLE();
+        }
+        return words;
+    }
+
+    @Benchmark
+    public int[] readWords() {
+        this.buffer.readerIndex(0);
+        return PaletteStorageSerializer.readWords(this.buffer, this.wordsCount);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PaletteWordsBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveLimiterTest {
+
+    @Test
+    public void growsAdditivelyWithFastSamples() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 4, 100);
+        assertEquals(1, limiter.getLimit());
+
+        assertTrue(limiter.onSample(10));
+        assertEquals(2, limiter.getLimit());
+        // Each fast sample adds 1 / limit, so higher limits grow slower
+        assertFalse(limiter.onSample(10));
+        assertFalse(limiter.onSample(10));
+        assertTrue(limiter.onSample(10));
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    public void neverExceedsBounds() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 3, 100);
+        for (int i = 0; i < 100; i++) {
+            limiter.onSample(1);
+        }
+        assertEquals(3, limiter.getLimit());
+
+        for (int i = 0; i < 100; i++) {
+            limiter.onSample(1000);
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void slowSampleBacksOffAndTimeoutResets() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 8, 100);
+        while (limiter.getLimit() < 8) {
+            limiter.onSample(10);
+        }
+
+        assertTrue(limiter.onSample(500));
+        assertEquals(6, limiter.getLimit());
+        limiter.onTimeout();
+        assertEquals(1, limiter.getLimit());
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentLong2ObjectMapTest {
+
+    @Test
+    public void basicOperations() {
+        ConcurrentLong2ObjectMap<String> map = new ConcurrentLong2ObjectMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(1L, "a"));
+        assertEquals("a", map.put(1L, "b"));
+        assertEquals("b", map.putIfAbsent(1L, "c"));
+        assertNull(map.putIfAbsent(-5L, "d"));
+
+        assertEquals(2, map.size());
+        assertTrue(map.containsKey(-5L));
+        assertEquals("b", map.get(1L));
+        assertEquals(2, map.values().size());
+
+        assertFalse(map.remove(1L, "a"));
+        assertTrue(map.remove(1L, "b"));
+        assertEquals("d", map.remove(-5L));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void computeIfAbsentDoesNotStoreNull() {
+        ConcurrentLong2ObjectMap<String> map = new ConcurrentLong2ObjectMap<>();
+        assertNull(map.computeIfAbsent(3L, key -> null));
+        assertFalse(map.containsKey(3L));
+        assertEquals("3", map.computeIfAbsent(3L, Long::toString));
+        assertEquals("3", map.computeIfAbsent(3L, key -> "other"));
+    }
+
+    @Test
+    public void concurrentComputeCreatesSingleValue() throws InterruptedException {
+        ConcurrentLong2ObjectMap<AtomicInteger> map = new ConcurrentLong2ObjectMap<>();
+        int keys = 1000;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (long key = 0; key < keys; key++) {
+                    map.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(keys, map.size());
+        for (AtomicInteger counter : map.values()) {
+            assertEquals(4, counter.get());
+        }
+    }
+}
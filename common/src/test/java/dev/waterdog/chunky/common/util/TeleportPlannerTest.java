@@ -0,0 +1,104 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.common.util;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import org.junit.Test;
+
+import java.util.List;
+
+import static dev.waterdog.chunky.common.util.ChunkUtils.*;
+import static org.junit.Assert.*;
+
+public class TeleportPlannerTest {
+
+    @Test
+    public void tilesCoverAreaExactlyOnce() {
+        List<TeleportPlanner.Tile> tiles = TeleportPlanner.plan(-10, -5, 30, 17, 8);
+        LongSet covered = new LongOpenHashSet();
+        for (TeleportPlanner.Tile tile : tiles) {
+            tile.forEachChunk(index -> assertTrue("Chunk covered twice", covered.add(index)));
+        }
+
+        assertEquals(41 * 23, covered.size());
+        for (int x = -10; x <= 30; x++) {
+            for (int z = -5; z <= 17; z++) {
+                assertTrue(covered.contains(chunkIndex(x, z)));
+            }
+        }
+    }
+
+    @Test
+    public void tileIsInRadiusOfItsCenter() {
+        int radius = 6;
+        for (TeleportPlanner.Tile tile : TeleportPlanner.plan(0, 0, 40, 40, radius)) {
+            LongSet visible = new LongOpenHashSet();
+            checkChunksInRadius(tile.getCenterX(), tile.getCenterZ(), radius, visible::add);
+            tile.forEachChunk(index -> assertTrue(visible.contains(index)));
+        }
+    }
+
+    @Test
+    public void centerChunkIsFirst() {
+        TeleportPlanner.Tile tile = TeleportPlanner.plan(0, 0, 9, 9, 8).get(0);
+        long[] first = new long[]{Long.MIN_VALUE};
+        tile.forEachChunk(index -> {
+            if (first[0] == Long.MIN_VALUE) {
+                first[0] = index;
+            }
+        });
+        assertEquals(tile.getCenterIndex(), first[0]);
+    }
+
+    @Test
+    public void consecutiveTilesAreAdjacent() {
+        int radius = 4;
+        int size = TeleportPlanner.coveredSquareSize(radius);
+        List<TeleportPlanner.Tile> tiles = TeleportPlanner.plan(0, 0, size * 8 - 1, size * 8 - 1, radius);
+        assertEquals(64, tiles.size());
+        for (int i = 1; i < tiles.size(); i++) {
+            TeleportPlanner.Tile previous = tiles.get(i - 1);
+            TeleportPlanner.Tile tile = tiles.get(i);
+            int distance = Math.abs(tile.getMinChunkX() - previous.getMinChunkX()) + Math.abs(tile.getMinChunkZ() - previous.getMinChunkZ());
+            assertEquals(size, distance);
+        }
+    }
+
+    @Test
+    public void chunkIteratorFollowsTileOrder() {
+        List<TeleportPlanner.Tile> tiles = TeleportPlanner.plan(-3, -3, 20, 11, 5);
+        LongList expected = new LongArrayList();
+        for (TeleportPlanner.Tile tile : tiles) {
+            tile.forEachChunk(expected::add);
+        }
+
+        LongList actual = new LongArrayList();
+        LongIterator iterator = TeleportPlanner.chunkIterator(tiles);
+        while (iterator.hasNext()) {
+            actual.add(iterator.nextLong());
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidArea() {
+        TeleportPlanner.plan(10, 0, 0, 10, 4);
+    }
+}
@@ -25,10 +25,12 @@ import dev.waterdog.chunky.common.network.ChunkyClient;
 import dev.waterdog.chunky.common.network.MinecraftVersion;
 import dev.waterdog.chunky.common.palette.VanillaBlockStates;
 import dev.waterdog.chunky.nukkit.palette.NukkitBlockPaletteFactory;
+import dev.waterdog.chunky.nukkit.palette.PaletteCache;
 import dev.waterdog.chunky.nukkit.world.ChunkyManager;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.File;
 import java.net.InetSocketAddress;
 import java.util.HashSet;
 import java.util.Set;
@@ -43,7 +45,10 @@ public class ChunkyPlugin extends PluginBase implements Listener {
     @Override
     public void onEnable() {
         this.saveDefaultConfig();
-        NukkitBlockPaletteFactory.get();
+        NukkitBlockPaletteFactory factory = NukkitBlockPaletteFactory.get();
+        if (this.getConfig().getBoolean("palette_cache", true)) {
+            factory.setPaletteCache(new PaletteCache(new File(this.getDataFolder(), "palette_cache")));
+        }
         this.worldName = this.getConfig().getString("world_name");
         this.getServer().getPluginManager().registerEvents(this, this);
     }
@@ -82,6 +87,11 @@ public class ChunkyPlugin extends PluginBase implements Listener {
     private ChunkyClient buildClient() {
         int peerCount = this.getConfig().getInt("peer_count", 2);
         int maxRequests = this.getConfig().getInt("max_pending_requests", 20);
+        int pipelineWindow = this.getConfig().getInt("pipeline_window", 1);
+        boolean adaptiveConcurrency = this.getConfig().getBoolean("adaptive_concurrency");
+        boolean zeroCopyDecoding = this.getConfig().getBoolean("zero_copy_decoding");
+        boolean lazyDecoding = this.getConfig().getBoolean("lazy_decoding");
+        int decodeThreads = this.getConfig().getInt("decode_threads", 0);
         boolean autoReconnect = this.getConfig().getBoolean("auto_reconnect");
         long reconnectInterval = this.getConfig().getLong("reconnect_interval");
 
@@ -106,6 +116,11 @@ public class ChunkyPlugin extends PluginBase implements Listener {
                 .maxPendingRequests(maxRequests)
                 .autoReconnect(autoReconnect)
                 .reconnectInterval(reconnectInterval)
+                .pipelineWindow(pipelineWindow)
+                .adaptiveConcurrency(adaptiveConcurrency)
+                .zeroCopyDecoding(zeroCopyDecoding)
+                .lazyDecoding(lazyDecoding)
+                .decodeThreads(decodeThreads)
                 .build();
     }
 }
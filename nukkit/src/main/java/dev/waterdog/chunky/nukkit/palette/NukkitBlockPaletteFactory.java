@@ -15,24 +15,30 @@
 
 package dev.waterdog.chunky.nukkit.palette;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
 import com.nukkitx.nbt.NbtMap;
 import com.nukkitx.nbt.NbtType;
 import com.nukkitx.nbt.NbtUtils;
 import dev.waterdog.chunky.common.palette.BlockPalette;
 import dev.waterdog.chunky.common.palette.BlockPaletteFactory;
 import dev.waterdog.chunky.common.palette.BlockPaletteLegacy;
+import dev.waterdog.chunky.common.palette.BlockStateHasher;
+import dev.waterdog.chunky.common.palette.BlockStateIndex;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 
 import java.io.InputStream;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 public class NukkitBlockPaletteFactory implements BlockPaletteFactory {
 
     private static NukkitBlockPaletteFactory instance;
-    private final BiMap<Integer, NbtMap> vanillaStates = HashBiMap.create();
+    private List<NbtMap> vanillaStates;
+    private Map<Integer, NbtMap> vanillaStateMap;
+    private BlockStateIndex stateIndex;
+    private long vanillaPaletteHash;
+    private PaletteCache paletteCache;
 
     public static NukkitBlockPaletteFactory get() {
         if (instance == null) {
@@ -53,21 +59,43 @@ public class NukkitBlockPaletteFactory implements BlockPaletteFactory {
             throw new AssertionError("Error loading block palette latest_palette.nbt", e);
         }
 
+        Int2ObjectOpenHashMap<NbtMap> stateMap = new Int2ObjectOpenHashMap<>(states.size());
         for (int i = 0; i < states.size(); i++) {
-            this.vanillaStates.put(i, states.get(i));
+            stateMap.put(i, states.get(i));
+            this.vanillaPaletteHash = HashCommon.mix(this.vanillaPaletteHash + BlockStateHasher.fingerprint(states.get(i)));
         }
+        this.stateIndex = new BlockStateIndex(states);
+        this.vanillaStates = states;
+        this.vanillaStateMap = Int2ObjectMaps.unmodifiable(stateMap);
     }
 
     public Map<Integer, NbtMap> getVanillaStates() {
-        return Collections.unmodifiableMap(this.vanillaStates);
+        return this.vanillaStateMap;
+    }
+
+    public long getVanillaPaletteHash() {
+        return this.vanillaPaletteHash;
+    }
+
+    public PaletteCache getPaletteCache() {
+        return this.paletteCache;
+    }
+
+    /**
+     * Sets cache of resolved palettes, must be set before palettes are created.
+     */
+    public void setPaletteCache(PaletteCache paletteCache) {
+        this.paletteCache = paletteCache;
     }
 
     public int state2Runtime(NbtMap state) {
-        Integer runtimeId = this.vanillaStates.inverse().get(state);
-        return runtimeId == null ? -1 : runtimeId;
+        return this.stateIndex.indexOf(state);
     }
 
     public NbtMap runtime2State(int runtimeId) {
+        if (runtimeId < 0 || runtimeId >= this.vanillaStates.size()) {
+            return null;
+        }
         return this.vanillaStates.get(runtimeId);
     }
 
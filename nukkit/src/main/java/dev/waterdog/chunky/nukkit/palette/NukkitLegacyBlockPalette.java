@@ -15,76 +15,147 @@
 
 package dev.waterdog.chunky.nukkit.palette;
 
+import cn.nukkit.Nukkit;
 import cn.nukkit.level.GlobalBlockPalette;
 import com.google.common.base.Preconditions;
 import com.nukkitx.blockstateupdater.BlockStateUpdaters;
 import com.nukkitx.nbt.NbtList;
 import com.nukkitx.nbt.NbtMap;
 import dev.waterdog.chunky.common.palette.BlockPaletteLegacy;
-import it.unimi.dsi.fastutil.ints.Int2IntMap;
-import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.objects.Object2IntMap;
-import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import dev.waterdog.chunky.common.palette.BlockStateHasher;
+import dev.waterdog.chunky.common.palette.BlockStateIndex;
+import it.unimi.dsi.fastutil.HashCommon;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import java.util.List;
+import java.util.stream.IntStream;
 
 public class NukkitLegacyBlockPalette implements BlockPaletteLegacy {
+    private static final Logger log = LogManager.getLogger("Chunky");
+    // Every n-th state is updated when computing cache key
+    private static final int UPDATER_SAMPLE_STEP = 64;
 
-    private final Object2IntMap<NbtMap> state2RuntimeMap = new Object2IntOpenHashMap<>();
-    private final Int2ObjectMap<NbtMap> runtime2StateMap = new Int2ObjectOpenHashMap<>();
-    private final Int2IntMap runtime2FullIdMap = new Int2IntOpenHashMap();
-    private final Object2IntMap<NbtMap> state2FullIdMap = new Object2IntOpenHashMap<>();
-    private final Int2ObjectMap<NbtMap> legacyId2UpdatedStateMap = new Int2ObjectOpenHashMap<>();
+    private final BlockStateIndex stateIndex;
+    // Runtime ids are dense from 0 to mapping size, so they index arrays directly
+    private final NbtMap[] runtime2State;
+    private final int[] runtime2FullId;
+    // Indexed by legacy full id, sized to the highest full id
+    private final NbtMap[] legacyId2UpdatedState;
     private final int version;
 
     public NukkitLegacyBlockPalette(List<NbtMap> mapping, int version, NukkitBlockPaletteFactory factory) {
-        this.state2RuntimeMap.defaultReturnValue(-1);
-        this.runtime2FullIdMap.defaultReturnValue(-1);
+        this.stateIndex = new BlockStateIndex(mapping);
+        this.runtime2State = new NbtMap[mapping.size()];
+        this.runtime2FullId = new int[mapping.size()];
+        this.version = version;
+
+        PaletteCache cache = factory.getPaletteCache();
+        long cacheKey = cache == null ? 0 : this.createCacheKey(mapping, factory);
+        PaletteCache.Entry cached = cache == null ? null : cache.load(version, cacheKey, mapping.size());
+        if (cached != null) {
+            log.debug("Loaded block palette {} from cache", version);
+        }
+
+        int[] legacyFullIds = new int[mapping.size()];
+        int[] updatedRuntimeIds = new int[mapping.size()];
+        NbtMap[] updatedStates = new NbtMap[mapping.size()];
+        // Resolving states is independent per state, so it runs on fork-join pool and writes only its own slot
+        IntStream.range(0, mapping.size()).parallel().forEach(i -> {
+            if (cached != null && (cached.getUpdatedRuntimeIds()[i] != -1 || cached.getLegacyFullIds()[i] < 0)) {
+                updatedRuntimeIds[i] = cached.getUpdatedRuntimeIds()[i];
+                legacyFullIds[i] = cached.getLegacyFullIds()[i];
+                updatedStates[i] = factory.runtime2State(updatedRuntimeIds[i]);
+            } else {
+                // Setup mapping to latest states here so we don't do it on runtime
+                updatedStates[i] = updateState(mapping.get(i));
+                updatedRuntimeIds[i] = factory.state2Runtime(updatedStates[i]);
+                legacyFullIds[i] = GlobalBlockPalette.getLegacyFullId(updatedRuntimeIds[i]);
+            }
+        });
+
+        // Size the table once, full ids are known after resolution
+        int maxLegacyFullId = -1;
+        for (int legacyFullId : legacyFullIds) {
+            maxLegacyFullId = Math.max(maxLegacyFullId, legacyFullId);
+        }
+        this.legacyId2UpdatedState = new NbtMap[maxLegacyFullId + 1];
+
+        // Register in runtime id order, so duplicates are reported and overridden deterministically
         for (int i = 0; i < mapping.size(); i++) {
-            this.registerState(mapping.get(i), i, factory);
+            this.registerState(mapping.get(i), i, legacyFullIds[i], updatedStates[i]);
         }
-        this.version = version;
+
+        if (cache != null && cached == null) {
+            cache.save(version, cacheKey, new PaletteCache.Entry(legacyFullIds, updatedRuntimeIds));
+        }
+    }
+
+    private static NbtMap updateState(NbtMap state) {
+        NbtMap blockState = state.containsKey("block") ? state.getCompound("block") : state;
+        return BlockStateUpdaters.updateBlockState(blockState, blockState.getInt("version"));
+    }
+
+    private long createCacheKey(List<NbtMap> mapping, NukkitBlockPaletteFactory factory) {
+        // Resolved ids depend on this mapping, latest vanilla palette and Nukkit global palette
+        long[] fingerprints = mapping.parallelStream().mapToLong(BlockStateHasher::fingerprint).toArray();
+        long key = HashCommon.mix(factory.getVanillaPaletteHash() + this.version);
+        key = HashCommon.mix(key + Nukkit.VERSION.hashCode());
+        for (long fingerprint : fingerprints) {
+            key = HashCommon.mix(key + fingerprint);
+        }
+
+        // Block state updaters are not versioned by themselves, so include their artifact version if known
+        // and output for sample of states, which changes when updater rules change
+        Package updaterPackage = BlockStateUpdaters.class.getPackage();
+        String updaterVersion = updaterPackage == null ? null : updaterPackage.getImplementationVersion();
+        key = HashCommon.mix(key + (updaterVersion == null ? 0 : updaterVersion.hashCode()));
+        for (int i = 0; i < mapping.size(); i += UPDATER_SAMPLE_STEP) {
+            key = HashCommon.mix(key + BlockStateHasher.fingerprint(updateState(mapping.get(i))));
+        }
+        return key;
     }
 
-    private void registerState(NbtMap state, int runtimeId, NukkitBlockPaletteFactory factory) {
-        Preconditions.checkArgument(!this.runtime2StateMap.containsKey(runtimeId),
+    private void registerState(NbtMap state, int runtimeId, int legacyFullId, NbtMap updatedState) {
+        Preconditions.checkArgument(this.runtime2State[runtimeId] == null,
                 "Mapping for runtimeId " + runtimeId + " is already created!");
-        Preconditions.checkArgument(!this.state2RuntimeMap.containsKey(state),
-                "Mapping for state is already created: " + state);
-        this.runtime2StateMap.put(runtimeId, state);
-        this.state2RuntimeMap.put(state, runtimeId);
+        this.runtime2State[runtimeId] = state;
 
-        // Setup mapping to latest states here so we don't do it on runtime
-        NbtMap blockState = state.containsKey("block") ? state.getCompound("block") : state;
-        NbtMap updatedState = BlockStateUpdaters.updateBlockState(blockState, blockState.getInt("version"));
-        int updatedRuntimeId = factory.state2Runtime(updatedState);
-        int legacyFullId = GlobalBlockPalette.getLegacyFullId(updatedRuntimeId);
+        this.runtime2FullId[runtimeId] = legacyFullId;
+        if (legacyFullId >= 0) {
+            this.legacyId2UpdatedState[legacyFullId] = updatedState;
+        }
+    }
 
-        this.runtime2FullIdMap.put(runtimeId, legacyFullId);
-        this.state2FullIdMap.put(state, legacyFullId);
-        this.legacyId2UpdatedStateMap.put(legacyFullId, updatedState);
+    private int state2FullId(NbtMap state) {
+        int runtimeId = this.state2RuntimeId(state);
+        return runtimeId == -1 ? -1 : this.runtime2FullId[runtimeId];
     }
 
     @Override
     public int state2RuntimeId(NbtMap state) {
-        return this.state2RuntimeMap.getInt(state);
+        return this.stateIndex.indexOf(state);
     }
 
     @Override
     public NbtMap runtimeId2State(int runtimeId) {
-        return this.runtime2StateMap.get(runtimeId);
+        if (runtimeId < 0 || runtimeId >= this.runtime2State.length) {
+            return null;
+        }
+        return this.runtime2State[runtimeId];
     }
 
     @Override
     public int runtimeId2LegacyFullId(int runtimeId) {
-        return this.runtime2FullIdMap.get(runtimeId);
+        if (runtimeId < 0 || runtimeId >= this.runtime2FullId.length) {
+            return -1;
+        }
+        return this.runtime2FullId[runtimeId];
     }
 
     @Override
     public int state2LegacyId(NbtMap state) {
-        int fullId = this.state2FullIdMap.getInt(state);
+        int fullId = this.state2FullId(state);
         if (fullId != -1) {
             return fullId >> 6;
         }
@@ -93,7 +164,7 @@ public class NukkitLegacyBlockPalette implements BlockPaletteLegacy {
 
     @Override
     public int state2LegacyData(NbtMap state) {
-        int fullId = this.state2FullIdMap.getInt(state);
+        int fullId = this.state2FullId(state);
         if (fullId != -1) {
             return fullId & 0xf;
         }
@@ -103,6 +174,9 @@ public class NukkitLegacyBlockPalette implements BlockPaletteLegacy {
     @Override
     public NbtMap legacy2State(int legacyId, int legacyData) {
         int fillId = legacyId << 6 | legacyData;
-        return this.legacyId2UpdatedStateMap.get(fillId);
+        if (fillId < 0 || fillId >= this.legacyId2UpdatedState.length) {
+            return null;
+        }
+        return this.legacyId2UpdatedState[fillId];
     }
 }
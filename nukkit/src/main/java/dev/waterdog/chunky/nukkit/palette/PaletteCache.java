@@ -0,0 +1,146 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.nukkit.palette;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Stores resolved palette tables in binary files, so block states do not have to be updated on every startup.
+ * Cache entry is used only if its key matches, the key covers everything the tables are computed from.
+ */
+public class PaletteCache {
+    private static final Logger log = LogManager.getLogger("Chunky");
+
+    private static final int MAGIC = 0x43484b50; // CHKP
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = Integer.BYTES * 3 + Long.BYTES;
+
+    private final File directory;
+
+    public PaletteCache(File directory) {
+        this.directory = directory;
+    }
+
+    private Path getPath(int version) {
+        return new File(this.directory, "palette_" + version + ".bin").toPath();
+    }
+
+    /**
+     * @return cached tables or null if cache does not exist or is outdated
+     */
+    public Entry load(int version, long key, int size) {
+        Path path = this.getPath(version);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+
+        try {
+            long expectedSize = HEADER_SIZE + (long) size * Integer.BYTES * 2;
+            if (Files.size(path) != expectedSize) {
+                return null;
+            }
+
+            // Tables are copied to heap arrays anyway, so plain buffered read is enough
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION || input.readLong() != key || input.readInt() != size) {
+                    return null;
+                }
+
+                int[] legacyFullIds = new int[size];
+                int[] updatedRuntimeIds = new int[size];
+                for (int i = 0; i < size; i++) {
+                    legacyFullIds[i] = input.readInt();
+                }
+                for (int i = 0; i < size; i++) {
+                    updatedRuntimeIds[i] = input.readInt();
+                }
+                return new Entry(legacyFullIds, updatedRuntimeIds);
+            }
+        } catch (IOException e) {
+            log.warn("Unable to load cached palette {}", path, e);
+            return null;
+        }
+    }
+
+    public void save(int version, long key, Entry entry) {
+        Path path = this.getPath(version);
+        Path tempPath = null;
+        try {
+            Files.createDirectories(path.getParent());
+            tempPath = Files.createTempFile(path.getParent(), "palette_" + version, ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(FORMAT_VERSION);
+                output.writeLong(key);
+                output.writeInt(entry.getLegacyFullIds().length);
+                for (int legacyFullId : entry.getLegacyFullIds()) {
+                    output.writeInt(legacyFullId);
+                }
+                for (int updatedRuntimeId : entry.getUpdatedRuntimeIds()) {
+                    output.writeInt(updatedRuntimeId);
+                }
+            }
+
+            try {
+                // Readers never see partially written file
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                // Partially written file would fail size or header check on load
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("Unable to save cached palette {}", path, e);
+        } finally {
+            if (tempPath != null) {
+                try {
+                    Files.deleteIfExists(tempPath);
+                } catch (IOException e) {
+                    log.warn("Unable to delete temporary palette file {}", tempPath, e);
+                }
+            }
+        }
+    }
+
+    public static class Entry {
+        private final int[] legacyFullIds;
+        private final int[] updatedRuntimeIds;
+
+        public Entry(int[] legacyFullIds, int[] updatedRuntimeIds) {
+            this.legacyFullIds = legacyFullIds;
+            this.updatedRuntimeIds = updatedRuntimeIds;
+        }
+
+        public int[] getLegacyFullIds() {
+            return this.legacyFullIds;
+        }
+
+        public int[] getUpdatedRuntimeIds() {
+            return this.updatedRuntimeIds;
+        }
+    }
+}
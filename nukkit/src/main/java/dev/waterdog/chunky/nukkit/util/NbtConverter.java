@@ -0,0 +1,76 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.nukkit.util;
+
+import cn.nukkit.nbt.tag.*;
+import com.nukkitx.nbt.NbtList;
+import com.nukkitx.nbt.NbtMap;
+
+import java.util.Map;
+
+/**
+ * Converts NukkitX nbt tree to Nukkit tags directly, without serializing it first.
+ */
+public class NbtConverter {
+
+    public static CompoundTag toCompoundTag(NbtMap nbt) {
+        return toCompoundTag("", nbt);
+    }
+
+    public static CompoundTag toCompoundTag(String name, NbtMap nbt) {
+        CompoundTag compoundTag = new CompoundTag(name);
+        for (Map.Entry<String, Object> entry : nbt.entrySet()) {
+            compoundTag.put(entry.getKey(), toTag(entry.getKey(), entry.getValue()));
+        }
+        return compoundTag;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static ListTag<? extends Tag> toListTag(String name, NbtList<?> nbt) {
+        ListTag listTag = new ListTag<>(name);
+        for (Object value : nbt) {
+            listTag.add(toTag("", value));
+        }
+        return listTag;
+    }
+
+    public static Tag toTag(String name, Object value) {
+        if (value instanceof Byte) {
+            return new ByteTag(name, (Byte) value);
+        } else if (value instanceof Short) {
+            return new ShortTag(name, (Short) value);
+        } else if (value instanceof Integer) {
+            return new IntTag(name, (Integer) value);
+        } else if (value instanceof Long) {
+            return new LongTag(name, (Long) value);
+        } else if (value instanceof Float) {
+            return new FloatTag(name, (Float) value);
+        } else if (value instanceof Double) {
+            return new DoubleTag(name, (Double) value);
+        } else if (value instanceof String) {
+            return new StringTag(name, (String) value);
+        } else if (value instanceof byte[]) {
+            return new ByteArrayTag(name, (byte[]) value);
+        } else if (value instanceof int[]) {
+            return new IntArrayTag(name, (int[]) value);
+        } else if (value instanceof NbtMap) {
+            return toCompoundTag(name, (NbtMap) value);
+        } else if (value instanceof NbtList) {
+            return toListTag(name, (NbtList<?>) value);
+        }
+        throw new IllegalArgumentException("Unsupported nbt value " + (value == null ? null : value.getClass().getSimpleName()) + " of tag " + name);
+    }
+}
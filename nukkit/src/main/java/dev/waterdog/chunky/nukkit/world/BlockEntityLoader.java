@@ -17,21 +17,17 @@ package dev.waterdog.chunky.nukkit.world;
 
 import cn.nukkit.blockentity.BlockEntity;
 import cn.nukkit.level.format.generic.BaseFullChunk;
-import cn.nukkit.nbt.NBTIO;
 import cn.nukkit.nbt.tag.CompoundTag;
-import cn.nukkit.nbt.tag.StringTag;
+import com.nukkitx.nbt.NbtMap;
 import dev.waterdog.chunky.common.data.chunk.ChunkHolder;
 import dev.waterdog.chunky.common.network.MinecraftVersion;
+import dev.waterdog.chunky.nukkit.util.NbtConverter;
 import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.ByteOrder;
 import java.util.List;
 
 public class BlockEntityLoader {
@@ -88,23 +84,24 @@ public class BlockEntityLoader {
     }
 
     public List<CompoundTag> loadBlockEntities(BaseFullChunk chunk, ChunkHolder chunkHolder, MinecraftVersion version) {
-        if (chunkHolder.getBlockEntities() == null || chunkHolder.getBlockEntities().length < 1) {
+        if (chunkHolder.getBlockEntities().isEmpty()) {
             return null;
         }
 
         List<CompoundTag> blockEntities = new ObjectArrayList<>();
-        try (InputStream stream = new ByteArrayInputStream(chunkHolder.getBlockEntities())) {
-            while (stream.available() > 0) {
-                CompoundTag nbt = NBTIO.read(stream, ByteOrder.LITTLE_ENDIAN, true);
-                if (nbt.contains("id") && nbt.get("id") instanceof StringTag) {
-                    CompoundTag compoundTag = this.createBlockEntityNBT(nbt.getString("id"), nbt, chunk);
-                    if (compoundTag != null) blockEntities.add(compoundTag);
-                }
+        for (NbtMap blockEntity : chunkHolder.getBlockEntities()) {
+            if (!(blockEntity.get("id") instanceof String)) {
+                continue;
             }
-        } catch (IOException e) {
-            log.error("Exception was thrown while reading BlockEntity nbt x=" + chunkHolder.getChunkX() + " z=" + chunkHolder.getChunkZ(), e);
-        }
 
+            try {
+                CompoundTag nbt = NbtConverter.toCompoundTag(blockEntity);
+                CompoundTag compoundTag = this.createBlockEntityNBT(nbt.getString("id"), nbt, chunk);
+                if (compoundTag != null) blockEntities.add(compoundTag);
+            } catch (IllegalArgumentException e) {
+                log.error("Exception was thrown while converting BlockEntity nbt x=" + chunkHolder.getChunkX() + " z=" + chunkHolder.getChunkZ(), e);
+            }
+        }
         return blockEntities;
     }
 }
@@ -25,20 +25,18 @@ import cn.nukkit.level.format.generic.BaseFullChunk;
 import cn.nukkit.level.generator.GeneratorTaskFactory;
 import cn.nukkit.level.util.PalettedBlockStorage;
 import cn.nukkit.math.Vector3;
-import cn.nukkit.nbt.NBTIO;
 import cn.nukkit.nbt.tag.CompoundTag;
 import cn.nukkit.scheduler.AsyncTask;
 import cn.nukkit.scheduler.ServerScheduler;
 import com.nukkitx.math.vector.Vector3i;
-import com.nukkitx.nbt.NBTOutputStream;
 import com.nukkitx.nbt.NbtMap;
-import com.nukkitx.nbt.NbtUtils;
 import dev.waterdog.chunky.common.ChunkyListener;
 import dev.waterdog.chunky.common.data.ChunkRequest;
 import dev.waterdog.chunky.common.data.chunk.ChunkHolder;
 import dev.waterdog.chunky.common.data.chunk.SubChunkHolder;
 import dev.waterdog.chunky.common.network.ChunkyClient;
 import dev.waterdog.chunky.common.network.ChunkyPeer;
+import dev.waterdog.chunky.nukkit.util.NbtConverter;
 import dev.waterdog.chunky.nukkit.world.anvil.AnvilChunkBuilder;
 import io.netty.util.internal.PlatformDependent;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
@@ -47,14 +45,12 @@ import net.jodah.expiringmap.ExpiringMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.nio.ByteOrder;
 import java.util.Collections;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static dev.waterdog.chunky.common.util.ChunkUtils.*;
 import static dev.waterdog.chunky.nukkit.world.ChunkyWorldUpdater.CHUNK_POST_UPDATE_RADIUS;
@@ -71,6 +67,10 @@ public class ChunkyManager implements ChunkyListener, GeneratorTaskFactory {
     private final Set<Long> lastRequests = Collections.newSetFromMap(ExpiringMap.builder()
             .expiration(120, TimeUnit.SECONDS)
             .build());
+    // Chunks which failed recently are retried only once
+    private final Set<Long> failedRequests = Collections.newSetFromMap(ExpiringMap.builder()
+            .expiration(120, TimeUnit.SECONDS)
+            .build());
 
     public ChunkyManager(ChunkyClient chunkyClient, Level level, boolean worldUpdates) {
         this.chunky = chunkyClient;
@@ -87,6 +87,11 @@ public class ChunkyManager implements ChunkyListener, GeneratorTaskFactory {
         log.info("Requesting chunk x={} z={}", chunk.getX(), chunk.getZ());
         this.lastRequests.add(chunkIndex(chunk.getX(), chunk.getZ()));
         this.chunky.requestChunk(chunk.getX(), chunk.getZ()).whenComplete(((chunkHolder, error) -> {
+            if (error instanceof TimeoutException) {
+                // Handled by onChunkRequestTimeout()
+                return;
+            }
+
             if (error != null) {
                 log.error("Failed to generate chunk", error);
             } else {
@@ -112,6 +117,10 @@ public class ChunkyManager implements ChunkyListener, GeneratorTaskFactory {
     private void requestChunkUpdateInternal(int chunkX, int chunkZ) {
         log.info("Requesting chunk update x={} z={}", chunkX, chunkZ);
         this.chunky.requestChunk(chunkX, chunkZ).whenComplete(((chunkHolder, error) -> {
+            if (error instanceof TimeoutException) {
+                return;
+            }
+
             if (error != null) {
                 log.error("Failed to update chunk", error);
             } else {
@@ -200,6 +209,9 @@ public class ChunkyManager implements ChunkyListener, GeneratorTaskFactory {
             if (wasNeighbourGenerated || subChunk.getY() <= 0) {
                 ChunkSection section = chunkBuilder.buildChunkSection(subChunk, chunkHolder.getBlockPalette());
                 sections.put(subChunk.getY(), section);
+            } else if (chunkHolder.isExclusive()) {
+                // Other consumers of the same request may still read the sub chunk
+                subChunk.recycle();
             }
         }
 
@@ -217,12 +229,12 @@ public class ChunkyManager implements ChunkyListener, GeneratorTaskFactory {
     @Override
     public void onBlockEntityUpdate(Vector3i position, NbtMap nbt) {
         try {
-            CompoundTag compoundTag = convertNbtMap(nbt);
+            CompoundTag compoundTag = NbtConverter.toCompoundTag(nbt);
             compoundTag.putInt("x", position.getX());
             compoundTag.putInt("y", position.getY());
             compoundTag.putInt("z", position.getZ());
             this.getScheduler().scheduleTask(() -> this.createBlockEntity(position, compoundTag));
-        } catch (IOException e) {
+        } catch (IllegalArgumentException e) {
             log.error("Failed to convert NbtMap", e);
         }
     }
@@ -256,6 +268,14 @@ public class ChunkyManager implements ChunkyListener, GeneratorTaskFactory {
         }
     }
 
+    @Override
+    public void onChunkRequestFailed(ChunkRequest request, ChunkyPeer peer, Throwable error) {
+        if (this.failedRequests.add(chunkIndex(request.getChunkX(), request.getChunkZ()))) {
+            log.info("Chunk request x={} z={} failed, retrying", request.getChunkX(), request.getChunkZ());
+            this.getScheduler().scheduleDelayedTask(() -> this.requestChunkInternal(request.getChunkX(), request.getChunkZ()), 15);
+        }
+    }
+
     private ServerScheduler getScheduler() {
         return this.level.getServer().getScheduler();
     }
@@ -270,16 +290,6 @@ public class ChunkyManager implements ChunkyListener, GeneratorTaskFactory {
         return new ChunkyGeneratorTask(this, chunk);
     }
 
-    public static CompoundTag convertNbtMap(NbtMap nbt) throws IOException {
-        ByteArrayOutputStream stream = new ByteArrayOutputStream();
-        try (NBTOutputStream nbtOutputStream = NbtUtils.createWriter(stream)){
-            nbtOutputStream.writeTag(nbt);
-        } finally {
-            stream.close();
-        }
-        return NBTIO.read(stream.toByteArray(), ByteOrder.BIG_ENDIAN, false);
-    }
-
     public ChunkBuilder getChunkBuilder() {
         LevelProvider provider = this.level.getProvider();
         if (provider instanceof Anvil) {
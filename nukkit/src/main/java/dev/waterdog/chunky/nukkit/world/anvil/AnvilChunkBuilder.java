@@ -18,10 +18,9 @@ package dev.waterdog.chunky.nukkit.world.anvil;
 import cn.nukkit.block.BlockID;
 import cn.nukkit.level.format.anvil.Chunk;
 import cn.nukkit.level.format.anvil.ChunkSection;
+import cn.nukkit.level.format.anvil.util.BlockStorage;
 import cn.nukkit.level.format.anvil.util.NibbleArray;
 import cn.nukkit.level.format.generic.BaseFullChunk;
-import cn.nukkit.level.util.BitArray;
-import cn.nukkit.level.util.BitArrayVersion;
 import dev.waterdog.chunky.common.data.chunk.ChunkyBlockStorage;
 import dev.waterdog.chunky.common.data.chunk.ChunkHolder;
 import dev.waterdog.chunky.common.data.chunk.SubChunkHolder;
@@ -30,8 +29,12 @@ import dev.waterdog.chunky.nukkit.world.ChunkBuilder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.Arrays;
+
 public class AnvilChunkBuilder implements ChunkBuilder {
     private static final Logger log = LogManager.getLogger("Chunky");
+    // Count of blocks in single section
+    private static final int SECTION_SIZE = 4096;
 
     public static final AnvilChunkBuilder INSTANCE = new AnvilChunkBuilder();
 
@@ -61,44 +64,89 @@ public class AnvilChunkBuilder implements ChunkBuilder {
         }
 
         ChunkyBlockStorage storage = subChunkHolder.getStorages()[0];
-        cn.nukkit.level.format.anvil.util.BlockStorage anvilStorage;
+        BlockStorage anvilStorage;
         if (storage.isEmpty()) {
-            anvilStorage = new cn.nukkit.level.format.anvil.util.BlockStorage();
+            anvilStorage = new BlockStorage();
+        } else if (storage.isUniform()) {
+            anvilStorage = this.createUniformStorage(storage.getPaletteEntry(0), blockPalette);
         } else if (storage.isLegacy()) {
-            anvilStorage = new cn.nukkit.level.format.anvil.util.BlockStorage(storage.getBlockIds(), new NibbleArray(storage.getBlockData()));
+            // Anvil storage uses the arrays directly, so they must not be recycled
+            byte[] blockIds = storage.getBlockIds();
+            byte[] blockData = storage.getBlockData();
+            if (storage.isLegacyDataAdopted()) {
+                // Arrays are already used by section built for other consumer
+                blockIds = blockIds.clone();
+                blockData = blockData.clone();
+            }
+            anvilStorage = new BlockStorage(blockIds, new NibbleArray(blockData));
+            storage.adoptLegacyData();
         } else {
-            BitArrayVersion version = BitArrayVersion.get(storage.getBitsPerBlock(), true);
-            BitArray bitArray = version.createPalette(BlockStorage.SIZE, storage.getWords());
-            BlockStorage palettedStorage = new BlockStorage(bitArray, storage.getPalette());
-            anvilStorage = this.convertStorages(palettedStorage, blockPalette);
+            anvilStorage = this.convertStorages(storage, blockPalette);
         }
 
         return new ChunkSection(subChunkHolder.getY(), anvilStorage, null, null, null, false, false);
     }
 
 
-    private cn.nukkit.level.format.anvil.util.BlockStorage convertStorages(BlockStorage palletedStorage, BlockPaletteLegacy blockPalette) {
-        cn.nukkit.level.format.anvil.util.BlockStorage storage = new cn.nukkit.level.format.anvil.util.BlockStorage();
-        for (int x = 0; x < 16; x++) {
-            for (int z = 0; z < 16; z++) {
-                for (int y = 0; y < 16; y++) {
-                    int runtimeId = palletedStorage.getBlock(x, y, z);
-                    int fullId = blockPalette.runtimeId2LegacyFullId(runtimeId);
-                    if (fullId == -1) {
-                        storage.setBlockId(x, y, z, BlockID.INFO_UPDATE);
-                    } else {
-                        int blockId = fullId >> 6;
-                        int meta = fullId & 0xf;
-                        if (blockId >= 0 && blockId < 256) {
-                            storage.setBlockId(x, y, z, blockId);
-                            storage.setBlockData(x, y, z, meta);
-                        } else {
-                            storage.setBlockId(x, y, z, BlockID.INFO_UPDATE);
-                        }
-                    }
+    private BlockStorage createUniformStorage(int runtimeId, BlockPaletteLegacy blockPalette) {
+        int fullId = blockPalette.runtimeId2LegacyFullId(runtimeId);
+        int blockId = fullId == -1 ? BlockID.INFO_UPDATE : fullId >> 6;
+        int meta = fullId == -1 ? 0 : fullId & 0xf;
+        if (blockId < 0 || blockId >= 256) {
+            blockId = BlockID.INFO_UPDATE;
+            meta = 0;
+        }
+
+        if (blockId == BlockID.AIR) {
+            return new BlockStorage();
+        }
+
+        byte[] blockIds = new byte[SECTION_SIZE];
+        Arrays.fill(blockIds, (byte) blockId);
+        byte[] blockData = new byte[SECTION_SIZE / 2];
+        Arrays.fill(blockData, (byte) ((meta << 4) | meta));
+        return new BlockStorage(blockIds, new NibbleArray(blockData));
+    }
+
+    BlockStorage convertStorages(ChunkyBlockStorage palettedStorage, BlockPaletteLegacy blockPalette) {
+        // Convert each palette entry only once
+        int paletteSize = palettedStorage.getPaletteSize();
+        byte[] paletteIds = new byte[paletteSize];
+        byte[] paletteData = new byte[paletteSize];
+        for (int i = 0; i < paletteSize; i++) {
+            int fullId = blockPalette.runtimeId2LegacyFullId(palettedStorage.getPaletteEntry(i));
+            int blockId = fullId >> 6;
+            if (fullId == -1 || blockId < 0 || blockId >= 256) {
+                paletteIds[i] = (byte) BlockID.INFO_UPDATE;
+            } else {
+                paletteIds[i] = (byte) blockId;
+                paletteData[i] = (byte) (fullId & 0xf);
+            }
+        }
+
+        // Words are packed in the same x, z, y order as anvil storage uses
+        int bitsPerBlock = palettedStorage.getBitsPerBlock();
+        int blocksPerWord = Integer.SIZE / bitsPerBlock;
+        int mask = (1 << bitsPerBlock) - 1;
+        int wordsCount = palettedStorage.getWordsCount();
+
+        byte[] blockIds = new byte[SECTION_SIZE];
+        byte[] blockData = new byte[SECTION_SIZE / 2];
+        int index = 0;
+        for (int i = 0; i < wordsCount && index < SECTION_SIZE; i++) {
+            int word = palettedStorage.getWord(i);
+            for (int j = 0; j < blocksPerWord && index < SECTION_SIZE; j++, index++) {
+                int paletteIndex = (word >>> (j * bitsPerBlock)) & mask;
+                if (paletteIndex >= paletteSize) {
+                    blockIds[index] = (byte) BlockID.INFO_UPDATE;
+                    continue;
                 }
+
+                blockIds[index] = paletteIds[paletteIndex];
+                // Even indexes use lower nibble
+                blockData[index >> 1] |= paletteData[paletteIndex] << ((index & 1) << 2);
             }
         }
-        return storage;
+        return new BlockStorage(blockIds, new NibbleArray(blockData));
     }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.nukkit.util;
+
+import cn.nukkit.nbt.tag.CompoundTag;
+import cn.nukkit.nbt.tag.IntTag;
+import cn.nukkit.nbt.tag.ListTag;
+import cn.nukkit.nbt.tag.StringTag;
+import com.nukkitx.nbt.NbtList;
+import com.nukkitx.nbt.NbtMap;
+import com.nukkitx.nbt.NbtType;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NbtConverterTest {
+
+    @Test
+    public void convertsPrimitiveTags() {
+        NbtMap nbt = NbtMap.builder()
+                .putByte("byte", (byte) 1)
+                .putShort("short", (short) 2)
+                .putInt("int", 3)
+                .putLong("long", 4L)
+                .putFloat("float", 5.5f)
+                .putDouble("double", 6.5)
+                .putString("string", "chunky")
+                .putByteArray("bytes", new byte[]{1, 2})
+                .putIntArray("ints", new int[]{3, 4})
+                .build();
+
+        CompoundTag tag = NbtConverter.toCompoundTag(nbt);
+        assertEquals(1, tag.getByte("byte"));
+        assertEquals(2, tag.getShort("short"));
+        assertEquals(3, tag.getInt("int"));
+        assertEquals(4L, tag.getLong("long"));
+        assertEquals(5.5f, tag.getFloat("float"), 0);
+        assertEquals(6.5, tag.getDouble("double"), 0);
+        assertEquals("chunky", tag.getString("string"));
+        assertArrayEquals(new byte[]{1, 2}, tag.getByteArray("bytes"));
+        assertArrayEquals(new int[]{3, 4}, tag.getIntArray("ints"));
+    }
+
+    @Test
+    public void convertsNestedTags() {
+        NbtMap nbt = NbtMap.builder()
+                .putCompound("block", NbtMap.builder().putString("name", "minecraft:stone").build())
+                .putList("values", NbtType.INT, new NbtList<>(NbtType.INT, 1, 2, 3))
+                .putList("names", NbtType.STRING, new NbtList<>(NbtType.STRING, "a", "b"))
+                .build();
+
+        CompoundTag tag = NbtConverter.toCompoundTag("root", nbt);
+        assertEquals("root", tag.getName());
+        CompoundTag block = tag.getCompound("block");
+        assertEquals("block", block.getName());
+        assertEquals("minecraft:stone", block.getString("name"));
+
+        ListTag<IntTag> values = tag.getList("values", IntTag.class);
+        assertEquals(3, values.size());
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(i + 1, values.get(i).data);
+        }
+        ListTag<StringTag> names = tag.getList("names", StringTag.class);
+        assertEquals("a", names.get(0).data);
+        assertEquals("b", names.get(1).data);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnsupportedValues() {
+        NbtConverter.toTag("longs", new long[]{1L});
+    }
+}
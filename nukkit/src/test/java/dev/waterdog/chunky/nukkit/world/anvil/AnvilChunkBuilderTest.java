@@ -0,0 +1,139 @@
+/*
+ * Copyright 2022 WaterdogTEAM
+ * Licensed under the GNU General Public License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.waterdog.chunky.nukkit.world.anvil;
+
+import cn.nukkit.block.BlockID;
+import cn.nukkit.level.format.anvil.util.BlockStorage;
+import com.nukkitx.nbt.NbtMap;
+import dev.waterdog.chunky.common.data.chunk.ChunkyBlockStorage;
+import dev.waterdog.chunky.common.palette.BlockPaletteLegacy;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AnvilChunkBuilderTest {
+
+    private static final int STONE = BlockID.STONE << 6;
+    private static final int DIRT = (BlockID.DIRT << 6) | 2;
+
+    private static final BlockPaletteLegacy PALETTE = new BlockPaletteLegacy() {
+        @Override
+        public int runtimeId2LegacyFullId(int runtimeId) {
+            switch (runtimeId) {
+                case 10:
+                    return STONE;
+                case 20:
+                    return DIRT;
+                default:
+                    return -1;
+            }
+        }
+
+        @Override
+        public int state2LegacyId(NbtMap state) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int state2LegacyData(NbtMap state) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public NbtMap legacy2State(int legacyId, int legacyData) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int state2RuntimeId(NbtMap state) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public NbtMap runtimeId2State(int runtimeId) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    private static final int BITS_PER_BLOCK = 3;
+
+    private static int[] createWords() {
+        int blocksPerWord = Integer.SIZE / BITS_PER_BLOCK;
+        int[] words = new int[(4096 + blocksPerWord - 1) / blocksPerWord];
+        for (int index = 0; index < 4096; index++) {
+            // Index 3 is out of palette bounds
+            int paletteIndex = index % 4;
+            words[index / blocksPerWord] |= paletteIndex << ((index % blocksPerWord) * BITS_PER_BLOCK);
+        }
+        return words;
+    }
+
+    private static ChunkyBlockStorage createStorage() {
+        ChunkyBlockStorage storage = new ChunkyBlockStorage();
+        storage.setPaletteHeader((BITS_PER_BLOCK << 1) | 1);
+        storage.setPalette(new int[]{10, 20, 30});
+        return storage;
+    }
+
+    private static void assertAnvilOrder(BlockStorage anvilStorage) {
+        for (int index = 0; index < 4096; index++) {
+            int x = index >> 8;
+            int z = (index >> 4) & 0xf;
+            int y = index & 0xf;
+            switch (index % 4) {
+                case 0:
+                    assertEquals(BlockID.STONE, anvilStorage.getBlockId(x, y, z));
+                    assertEquals(0, anvilStorage.getBlockData(x, y, z));
+                    break;
+                case 1:
+                    assertEquals(BlockID.DIRT, anvilStorage.getBlockId(x, y, z));
+                    assertEquals(2, anvilStorage.getBlockData(x, y, z));
+                    break;
+                default:
+                    assertEquals(BlockID.INFO_UPDATE, anvilStorage.getBlockId(x, y, z));
+                    assertEquals(0, anvilStorage.getBlockData(x, y, z));
+                    break;
+            }
+        }
+    }
+
+    @Test
+    public void convertsPalettedWordsInAnvilOrder() {
+        ChunkyBlockStorage storage = createStorage();
+        storage.setWords(createWords());
+        assertAnvilOrder(AnvilChunkBuilder.INSTANCE.convertStorages(storage, PALETTE));
+    }
+
+    @Test
+    public void recycleReleasesWordsBuffer() {
+        int[] words = createWords();
+        ByteBuf buffer = Unpooled.buffer(words.length * Integer.BYTES);
+        for (int word : words) {
+            buffer.writeIntLE(word);
+        }
+
+        ChunkyBlockStorage storage = createStorage();
+        storage.setWordsBuffer(buffer);
+        assertAnvilOrder(AnvilChunkBuilder.INSTANCE.convertStorages(storage, PALETTE));
+        // Conversion reads words from the buffer without materializing them
+        assertEquals(1, buffer.refCnt());
+
+        storage.recycle();
+        assertEquals(0, buffer.refCnt());
+    }
+}